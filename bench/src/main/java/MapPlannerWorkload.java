@@ -0,0 +1,108 @@
+import bench.CityMap;
+import bench.Workload;
+
+import java.util.Random;
+
+/**
+ * Runs the benchmark workloads against the planner classes, which share this default package.
+ */
+public class MapPlannerWorkload implements Workload {
+    private static final int TURN_SAMPLES = 1024;
+
+    private MapPlanner mapPlanner;
+    private String[] streetIds;
+    private Route route;
+    private final Point[] turnFrom = new Point[TURN_SAMPLES];
+    private final Point[] turnAt = new Point[TURN_SAMPLES];
+    private final Point[] turnTo = new Point[TURN_SAMPLES];
+    private int degree;
+
+    @Override
+    public void load(CityMap city, int degree) {
+        this.degree = degree;
+        this.streetIds = city.ids;
+        mapPlanner = (MapPlanner) buildPlanner(city, degree);
+        mapPlanner.depotLocation(new Location(city.ids[0], StreetSide.Right));
+
+        // Sample turns are taken at real intersections of the city
+        Random random = new Random(42);
+        for (int i = 0; i < TURN_SAMPLES; i++) {
+            int street = random.nextInt(city.size());
+            int other = random.nextInt(city.size());
+            turnFrom[i] = new Point(city.startX[street], city.startY[street]);
+            turnAt[i] = new Point(city.endX[street], city.endY[street]);
+            turnTo[i] = new Point(city.endX[other], city.endY[other]);
+        }
+
+        // The longest route from the depot is the sample for the Route benchmarks
+        ShortestPathTree tree = mapPlanner.noLeftTurnTree();
+        Location furthest = null;
+        double furthestDistance = -1;
+        for (String id : city.ids) {
+            Location location = new Location(id, StreetSide.Right);
+            Double distance = tree.distance(location);
+            if (distance != null && distance > furthestDistance) {
+                furthestDistance = distance;
+                furthest = location;
+            }
+        }
+        route = tree.route(furthest);
+
+        // Later queries must search, not read the tree
+        mapPlanner.depotLocation(new Location(city.ids[0], StreetSide.Right));
+    }
+
+    @Override
+    public void prepareLandmarks(int count) {
+        mapPlanner.prepareLandmarks(count);
+    }
+
+    @Override
+    public Object buildPlanner(CityMap city, int degree) {
+        MapPlanner planner = new MapPlanner(degree);
+        for (int i = 0; i < city.size(); i++) {
+            planner.addStreet(city.ids[i], new Point(city.startX[i], city.startY[i]), new Point(city.endX[i], city.endY[i]));
+        }
+        return planner;
+    }
+
+    @Override
+    public Object furthestStreet() {
+        return mapPlanner.furthestStreet();
+    }
+
+    @Override
+    public Object routeNoLeftTurn(int street) {
+        return mapPlanner.routeNoLeftTurn(new Location(streetIds[street], StreetSide.Right));
+    }
+
+    @Override
+    public Object turnType(int sample) {
+        return turnFrom[sample].turnType(turnAt[sample], turnTo[sample], degree);
+    }
+
+    @Override
+    public int turnSamples() {
+        return TURN_SAMPLES;
+    }
+
+    @Override
+    public double routeLength() {
+        return route.length();
+    }
+
+    @Override
+    public Object routeLoops() {
+        return route.loops();
+    }
+
+    @Override
+    public Object routeSimplify() {
+        return route.simplify();
+    }
+
+    @Override
+    public Object extractRoute() {
+        return new SubRoute(route, 1, route.legs(), mapPlanner).extractRoute();
+    }
+}
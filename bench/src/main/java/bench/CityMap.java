@@ -0,0 +1,146 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A synthetic city: a list of streets given by id and integer endpoint coordinates in metres.
+ *
+ * The maps are plain data so that they can be generated once per benchmark trial and fed to a fresh planner.
+ * Every shape is deterministic for a given size and seed.
+ */
+public final class CityMap {
+    /** Distance between neighbouring intersections, in metres. */
+    static final int BLOCK = 100;
+
+    public final String[] ids;
+    public final int[] startX, startY, endX, endY;
+
+    private CityMap(List<int[]> segments, String prefix) {
+        int count = segments.size();
+        ids = new String[count];
+        startX = new int[count];
+        startY = new int[count];
+        endX = new int[count];
+        endY = new int[count];
+        for (int i = 0; i < count; i++) {
+            int[] segment = segments.get(i);
+            ids[i] = prefix + " " + i;
+            startX[i] = segment[0];
+            startY[i] = segment[1];
+            endX[i] = segment[2];
+            endY[i] = segment[3];
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Build a city of roughly the given number of streets.
+     * @param shape -- "grid", "radial" or "random"
+     * @param streets -- the approximate number of streets
+     * @param seed -- seed for the random choices of the shape
+     */
+    public static CityMap of(String shape, int streets, long seed) {
+        switch (shape) {
+            case "grid":
+                return grid(streets);
+            case "radial":
+                return radial(streets);
+            case "random":
+                return randomPlanar(streets, seed);
+            default:
+                throw new IllegalArgumentException("Unknown city shape " + shape);
+        }
+    }
+
+    /**
+     * A square Manhattan grid with streets oriented alternately, so that routes see both street sides.
+     */
+    public static CityMap grid(int streets) {
+        int side = gridSide(streets);
+        List<int[]> segments = new ArrayList<>(2 * side * (side + 1));
+        for (int y = 0; y <= side; y++) {
+            for (int x = 0; x < side; x++) {
+                segments.add(orient(x * BLOCK, y * BLOCK, (x + 1) * BLOCK, y * BLOCK, (x + y) % 2 == 0));
+            }
+        }
+        for (int x = 0; x <= side; x++) {
+            for (int y = 0; y < side; y++) {
+                segments.add(orient(x * BLOCK, y * BLOCK, x * BLOCK, (y + 1) * BLOCK, (x + y) % 2 == 1));
+            }
+        }
+        return new CityMap(segments, "Grid St");
+    }
+
+    /**
+     * Concentric ring roads joined by spokes from the centre, like an old European city.
+     */
+    public static CityMap radial(int streets) {
+        int spokes = 32;
+        int rings = Math.max(1, streets / (2 * spokes));
+        int[][] x = new int[rings + 1][spokes];
+        int[][] y = new int[rings + 1][spokes];
+        for (int r = 0; r <= rings; r++) {
+            for (int s = 0; s < spokes; s++) {
+                double angle = 2 * Math.PI * s / spokes;
+                x[r][s] = (int) Math.round((r + 1) * BLOCK * Math.cos(angle));
+                y[r][s] = (int) Math.round((r + 1) * BLOCK * Math.sin(angle));
+            }
+        }
+
+        List<int[]> segments = new ArrayList<>(2 * rings * spokes + spokes);
+        for (int r = 0; r <= rings; r++) {
+            for (int s = 0; s < spokes; s++) {
+                int next = (s + 1) % spokes;
+                segments.add(new int[]{x[r][s], y[r][s], x[r][next], y[r][next]});
+                if (r < rings) {
+                    segments.add(new int[]{x[r][s], y[r][s], x[r + 1][s], y[r + 1][s]});
+                }
+            }
+        }
+        return new CityMap(segments, "Ring Rd");
+    }
+
+    /**
+     * A planar map with irregular blocks: a grid whose intersections are jittered by up to a third of a block
+     * and from which a random sixth of the streets is removed.
+     */
+    public static CityMap randomPlanar(int streets, long seed) {
+        Random random = new Random(seed);
+        int side = gridSide(streets * 6 / 5);
+        int[][] x = new int[side + 1][side + 1];
+        int[][] y = new int[side + 1][side + 1];
+        for (int i = 0; i <= side; i++) {
+            for (int j = 0; j <= side; j++) {
+                x[i][j] = i * BLOCK + random.nextInt(2 * BLOCK / 3) - BLOCK / 3;
+                y[i][j] = j * BLOCK + random.nextInt(2 * BLOCK / 3) - BLOCK / 3;
+            }
+        }
+
+        List<int[]> segments = new ArrayList<>(2 * side * (side + 1));
+        for (int i = 0; i <= side; i++) {
+            for (int j = 0; j <= side; j++) {
+                if (i < side && random.nextInt(6) != 0) {
+                    segments.add(orient(x[i][j], y[i][j], x[i + 1][j], y[i + 1][j], random.nextBoolean()));
+                }
+                if (j < side && random.nextInt(6) != 0) {
+                    segments.add(orient(x[i][j], y[i][j], x[i][j + 1], y[i][j + 1], random.nextBoolean()));
+                }
+            }
+        }
+        return new CityMap(segments, "Random Way");
+    }
+
+    // Blocks along the side of a square grid that has about the given number of streets
+    private static int gridSide(int streets) {
+        return Math.max(1, (int) Math.round(Math.sqrt(streets / 2.0)));
+    }
+
+    private static int[] orient(int x1, int y1, int x2, int y2, boolean flip) {
+        return flip ? new int[]{x2, y2, x1, y1} : new int[]{x1, y1, x2, y2};
+    }
+}
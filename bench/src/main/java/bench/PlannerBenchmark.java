@@ -0,0 +1,70 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map building and the two searches of the planner, over synthetic cities of several shapes and sizes.
+ * Single-destination routes are measured with and without landmark tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlannerBenchmark {
+
+    @Param({"grid", "radial", "random"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int streets;
+
+    private CityMap city;
+    private Workload workload;
+    private Workload landmarkWorkload;
+    private int[] targets;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        city = CityMap.of(shape, streets, 7);
+        workload = Workload.create();
+        workload.load(city, 30);
+        landmarkWorkload = Workload.create();
+        landmarkWorkload.load(city, 30);
+        landmarkWorkload.prepareLandmarks(8);
+
+        Random random = new Random(11);
+        targets = new int[256];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = random.nextInt(city.size());
+        }
+    }
+
+    // A whole planner built from scratch, one addStreet per street of the city
+    @Benchmark
+    public Object buildMap() {
+        return workload.buildPlanner(city, 30);
+    }
+
+    @Benchmark
+    public Object furthestStreet() {
+        return workload.furthestStreet();
+    }
+
+    @Benchmark
+    public Object routeNoLeftTurn() {
+        next = (next + 1) & (targets.length - 1);
+        return workload.routeNoLeftTurn(targets[next]);
+    }
+
+    @Benchmark
+    public Object routeNoLeftTurnWithLandmarks() {
+        next = (next + 1) & (targets.length - 1);
+        return landmarkWorkload.routeNoLeftTurn(targets[next]);
+    }
+}
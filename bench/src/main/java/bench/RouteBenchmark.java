@@ -0,0 +1,51 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route and SubRoute operations on the longest route from the depot of a synthetic city.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+
+    @Param({"grid", "radial", "random"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int streets;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.create();
+        workload.load(CityMap.of(shape, streets, 7), 30);
+    }
+
+    @Benchmark
+    public double length() {
+        return workload.routeLength();
+    }
+
+    @Benchmark
+    public Object loops() {
+        return workload.routeLoops();
+    }
+
+    @Benchmark
+    public Object simplify() {
+        return workload.routeSimplify();
+    }
+
+    @Benchmark
+    public Object extractRoute() {
+        return workload.extractRoute();
+    }
+}
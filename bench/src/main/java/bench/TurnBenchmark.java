@@ -0,0 +1,34 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point.turnType on turns sampled from the intersections of a grid city.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TurnBenchmark {
+
+    private Workload workload;
+    private int samples;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.create();
+        workload.load(CityMap.grid(1000), 30);
+        samples = workload.turnSamples();
+    }
+
+    @Benchmark
+    public Object turnType() {
+        next = (next + 1) % samples;
+        return workload.turnType(next);
+    }
+}
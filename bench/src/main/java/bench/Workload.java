@@ -0,0 +1,51 @@
+package bench;
+
+/**
+ * The planner operations measured by the benchmarks.
+ *
+ * The planner classes live in the default package, which cannot be imported from a named package, and JMH
+ * refuses benchmark classes in the default package.  The benchmarks therefore drive the planner through this
+ * interface, implemented by MapPlannerWorkload in the default package.  The single implementation keeps every
+ * call monomorphic, so the JIT inlines it and it adds nothing measurable.
+ */
+public interface Workload {
+
+    /**
+     * Load a city into a fresh planner, set the depot on its first street and prepare the sample points and
+     * route used by the smaller benchmarks.
+     */
+    void load(CityMap city, int degree);
+
+    /** Compute the given number of landmarks on the loaded planner. */
+    void prepareLandmarks(int count);
+
+    /** Add every street of the city to a new planner and return the planner. */
+    Object buildPlanner(CityMap city, int degree);
+
+    Object furthestStreet();
+
+    /** Route without left turns from the depot to the given street of the city. */
+    Object routeNoLeftTurn(int street);
+
+    /** Classify one of the sample turns prepared by load. */
+    Object turnType(int sample);
+
+    /** Number of sample turns prepared by load. */
+    int turnSamples();
+
+    double routeLength();
+
+    Object routeLoops();
+
+    Object routeSimplify();
+
+    Object extractRoute();
+
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("MapPlannerWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("MapPlannerWorkload is missing from the benchmark jar", e);
+        }
+    }
+}
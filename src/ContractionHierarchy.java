@@ -0,0 +1,476 @@
+import java.util.Arrays;
+
+/**
+ * A contraction hierarchy over the (street, direction) states of a RoadGraph, for routes without left turns.
+ *
+ * The hierarchy is edge-based: its nodes are the states of the map and its edges are the turns allowed between
+ * them, so a banned left turn is simply a missing edge and no route through the hierarchy can take one.  States
+ * are contracted one at a time, least important first.  Contracting a state removes it and adds a shortcut
+ * between each pair of its neighbours whose shortest route ran through it.  A route is then found by two
+ * small searches that only ever climb the hierarchy: forwards from the start and backwards from the target,
+ * meeting at the most important state of the route.  Shortcuts remember the two edges they replace, so the
+ * route is unpacked back into every state it drives.
+ *
+ * Building the hierarchy takes a while, so it is meant to be done once for a finished map.  It belongs to one
+ * compiled map and is not updated when streets are added.
+ */
+final class ContractionHierarchy {
+    // States settled by a witness search before it gives up and keeps the shortcut
+    private static final int WITNESS_LIMIT = 100;
+
+    private final RoadGraph map;
+
+    // Every edge, turns and shortcuts alike; shortcut e stands for edge first[e] followed by edge second[e]
+    private final int[] edgeFrom, edgeTo;
+    private final int[] first, second;
+
+    // Edges towards more important states, in compressed-sparse-row form: those leaving state s for the forward
+    // search, and those entering state s for the backward search
+    private final int[] upStart, upEdge, upState;
+    private final double[] upCost;
+    private final int[] downStart, downEdge, downState;
+    private final double[] downCost;
+
+    private ContractionHierarchy(RoadGraph map, Builder builder) {
+        this.map = map;
+        int edges = builder.edgeCount;
+        this.edgeFrom = Arrays.copyOf(builder.from, edges);
+        this.edgeTo = Arrays.copyOf(builder.to, edges);
+        this.first = Arrays.copyOf(builder.first, edges);
+        this.second = Arrays.copyOf(builder.second, edges);
+
+        int states = map.stateCount();
+        int[] rank = builder.rank;
+        upStart = new int[states + 1];
+        downStart = new int[states + 1];
+        for (int e = 0; e < edges; e++) {
+            if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+                upStart[edgeFrom[e] + 1]++;
+            } else {
+                downStart[edgeTo[e] + 1]++;
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            upStart[s + 1] += upStart[s];
+            downStart[s + 1] += downStart[s];
+        }
+        upEdge = new int[upStart[states]];
+        upState = new int[upEdge.length];
+        upCost = new double[upEdge.length];
+        downEdge = new int[downStart[states]];
+        downState = new int[downEdge.length];
+        downCost = new double[downEdge.length];
+        int[] upFill = Arrays.copyOf(upStart, states);
+        int[] downFill = Arrays.copyOf(downStart, states);
+        for (int e = 0; e < edges; e++) {
+            if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+                int slot = upFill[edgeFrom[e]]++;
+                upEdge[slot] = e;
+                upState[slot] = edgeTo[e];
+                upCost[slot] = builder.cost[e];
+            } else {
+                int slot = downFill[edgeTo[e]]++;
+                downEdge[slot] = e;
+                downState[slot] = edgeFrom[e];
+                downCost[slot] = builder.cost[e];
+            }
+        }
+    }
+
+    /**
+     * Build the hierarchy of a map for routes that never turn left or U-turn.
+     */
+    static ContractionHierarchy build(RoadGraph map) {
+        Builder builder = new Builder(map, TurnCostModel.NO_LEFT_TURN);
+        builder.contractAll();
+        return new ContractionHierarchy(map, builder);
+    }
+
+    RoadGraph map() {
+        return map;
+    }
+
+    // Number of shortcuts added on top of the turns of the map
+    int shortcutCount() {
+        int shortcuts = 0;
+        for (int e = 0; e < first.length; e++) {
+            if (first[e] >= 0) shortcuts++;
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Create the working space for routing over this hierarchy.  A query can be reused for any number of routes
+     * but by one thread at a time.
+     */
+    Query newQuery() {
+        return new Query();
+    }
+
+    /**
+     * The working space of one route search.  Only the states touched by the previous route are reset, so a
+     * route costs time in proportion to the few states its searches reach.
+     */
+    final class Query {
+        private final double[] forward, backward;
+        private final int[] forwardEdge, backwardEdge;
+        private final StateHeap forwardHeap, backwardHeap;
+        private final int[] touched;
+        private int touchedCount;
+
+        private Query() {
+            int states = map.stateCount();
+            forward = new double[states];
+            backward = new double[states];
+            forwardEdge = new int[states];
+            backwardEdge = new int[states];
+            Arrays.fill(forward, Double.POSITIVE_INFINITY);
+            Arrays.fill(backward, Double.POSITIVE_INFINITY);
+            forwardHeap = new StateHeap(states);
+            backwardHeap = new StateHeap(states);
+            touched = new int[states];
+        }
+
+        ContractionHierarchy hierarchy() {
+            return ContractionHierarchy.this;
+        }
+
+        /**
+         * Find the shortest route without left turns from a start state to either direction of a target street.
+         * @return -- the states of the route, starting state first, or null if the target is unreachable
+         */
+        int[] route(int start, int targetStreet) {
+            reset();
+            reach(start, 0.0, -1, true);
+            reach(2 * targetStreet, 0.0, -1, false);
+            reach(2 * targetStreet + 1, 0.0, -1, false);
+
+            // Each search stops once it can no longer find anything shorter than the best meeting so far
+            double best = Double.POSITIVE_INFINITY;
+            int meet = -1;
+            while (true) {
+                boolean forwardOpen = !forwardHeap.isEmpty() && forwardHeap.peekKey() < best;
+                boolean backwardOpen = !backwardHeap.isEmpty() && backwardHeap.peekKey() < best;
+                if (!forwardOpen && !backwardOpen) break;
+
+                if (forwardOpen && (!backwardOpen || forwardHeap.peekKey() <= backwardHeap.peekKey())) {
+                    int state = forwardHeap.pop();
+                    if (forward[state] + backward[state] < best) {
+                        best = forward[state] + backward[state];
+                        meet = state;
+                    }
+                    if (stalled(state, forward, downStart, downState, downCost)) continue;
+                    for (int slot = upStart[state]; slot < upStart[state + 1]; slot++) {
+                        reach(upState[slot], forward[state] + upCost[slot], upEdge[slot], true);
+                    }
+                } else {
+                    int state = backwardHeap.pop();
+                    if (forward[state] + backward[state] < best) {
+                        best = forward[state] + backward[state];
+                        meet = state;
+                    }
+                    if (stalled(state, backward, upStart, upState, upCost)) continue;
+                    for (int slot = downStart[state]; slot < downStart[state + 1]; slot++) {
+                        reach(downState[slot], backward[state] + downCost[slot], downEdge[slot], false);
+                    }
+                }
+            }
+            return meet < 0 ? null : unpack(start, meet);
+        }
+
+        // A state reached more cheaply through a more important one lies on no shortest route, so its search
+        // need not go on from it.  The edges from more important states are those the other search climbs.
+        private boolean stalled(int state, double[] label, int[] start, int[] neighbour, double[] cost) {
+            for (int slot = start[state]; slot < start[state + 1]; slot++) {
+                if (label[neighbour[slot]] + cost[slot] < label[state]) return true;
+            }
+            return false;
+        }
+
+        private void reach(int state, double distance, int edge, boolean isForward) {
+            double[] label = isForward ? forward : backward;
+            if (distance >= label[state]) return;
+            if (forward[state] == Double.POSITIVE_INFINITY && backward[state] == Double.POSITIVE_INFINITY) {
+                touched[touchedCount++] = state;
+            }
+            label[state] = distance;
+            (isForward ? forwardEdge : backwardEdge)[state] = edge;
+            (isForward ? forwardHeap : backwardHeap).push(state, distance);
+        }
+
+        // Expand the edges from the start up to the meeting state and down to the target into the states driven
+        private int[] unpack(int start, int meet) {
+            int[] path = new int[16];
+            int legs = 0;
+            for (int at = meet; forwardEdge[at] >= 0; at = edgeFrom[forwardEdge[at]]) {
+                path = grow(path, legs);
+                path[legs++] = forwardEdge[at];
+            }
+            // The forward edges were collected backwards
+            for (int i = 0, j = legs - 1; i < j; i++, j--) {
+                int swap = path[i];
+                path[i] = path[j];
+                path[j] = swap;
+            }
+            for (int at = meet; backwardEdge[at] >= 0; at = edgeTo[backwardEdge[at]]) {
+                path = grow(path, legs);
+                path[legs++] = backwardEdge[at];
+            }
+
+            int[] states = new int[16];
+            int count = 0;
+            states[count++] = start;
+            int[] stack = new int[16];
+            for (int i = 0; i < legs; i++) {
+                int depth = 0;
+                stack[depth++] = path[i];
+                while (depth > 0) {
+                    int edge = stack[--depth];
+                    if (first[edge] < 0) {
+                        states = grow(states, count);
+                        states[count++] = edgeTo[edge];
+                    } else {
+                        stack = grow(stack, depth + 1);
+                        stack[depth++] = second[edge];
+                        stack[depth++] = first[edge];
+                    }
+                }
+            }
+            return Arrays.copyOf(states, count);
+        }
+
+        private void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                int state = touched[i];
+                forward[state] = Double.POSITIVE_INFINITY;
+                backward[state] = Double.POSITIVE_INFINITY;
+            }
+            touchedCount = 0;
+            forwardHeap.clear();
+            backwardHeap.clear();
+        }
+    }
+
+    private static int[] grow(int[] array, int used) {
+        return used < array.length ? array : Arrays.copyOf(array, 2 * array.length);
+    }
+
+    /**
+     * The graph being contracted: growable edge lists per state, plus the witness search used to decide
+     * whether a shortcut is needed.
+     */
+    private static final class Builder {
+        private final int states;
+        int edgeCount;
+        int[] from, to, first, second;
+        double[] cost;
+        private final int[][] out, in;
+        private final int[] outSize, inSize;
+
+        private final int[] deleted;
+        private final int[] level;
+        final int[] rank;
+
+        private final double[] witness;
+        private final int[] witnessTouched;
+        private int witnessCount;
+        private final StateHeap witnessHeap;
+
+        Builder(RoadGraph map, TurnCostModel model) {
+            states = map.stateCount();
+            int capacity = Math.max(16, 2 * states);
+            from = new int[capacity];
+            to = new int[capacity];
+            first = new int[capacity];
+            second = new int[capacity];
+            cost = new double[capacity];
+            out = new int[states][];
+            in = new int[states][];
+            outSize = new int[states];
+            inSize = new int[states];
+            for (int s = 0; s < states; s++) {
+                out[s] = new int[4];
+                in[s] = new int[4];
+            }
+            deleted = new int[states];
+            level = new int[states];
+            rank = new int[states];
+            witness = new double[states];
+            Arrays.fill(witness, Double.POSITIVE_INFINITY);
+            witnessTouched = new int[states];
+            witnessHeap = new StateHeap(states);
+
+            // The turns of the map, costed as TurnSearch costs them
+            double[] turnCost = model.costs();
+            int[] overrideRow = model.overrideRows(map);
+            double[] overrideCost = model.overrideCosts(map);
+            for (int state = 0; state < states; state++) {
+                int street = RoadGraph.street(state);
+                int head = map.headNode(state);
+                for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+                    int next = map.outState(slot);
+                    int nextStreet = RoadGraph.street(next);
+                    if (nextStreet == street) continue;
+                    TurnDirection turn = map.turnAt(state, slot);
+                    if (turn == null) continue;
+                    int row = overrideRow == null ? -1 : overrideRow[head];
+                    double cost = row < 0 ? turnCost[turn.ordinal()] : overrideCost[row + turn.ordinal()];
+                    if (cost == Double.POSITIVE_INFINITY) continue;
+                    addEdge(state, next, (map.length(street) + map.length(nextStreet)) / 2 + cost, -1, -1);
+                }
+            }
+        }
+
+        // Contract every state, always picking the one whose removal changes the graph least
+        void contractAll() {
+            StateHeap queue = new StateHeap(states);
+            for (int state = 0; state < states; state++) {
+                queue.push(state, priority(state));
+            }
+            int order = 0;
+            while (!queue.isEmpty()) {
+                int state = queue.pop();
+                // Priorities go stale as neighbours are contracted; recheck before committing
+                double current = priority(state);
+                if (!queue.isEmpty() && current > queue.peekKey()) {
+                    queue.push(state, current);
+                    continue;
+                }
+                contract(state, false);
+                rank[state] = order++;
+                detach(state);
+            }
+        }
+
+        // Drop a contracted state from the edge lists of its neighbours, which move up a level
+        private void detach(int state) {
+            for (int i = 0; i < outSize[state]; i++) {
+                int next = to[out[state][i]];
+                deleted[next]++;
+                level[next] = Math.max(level[next], level[state] + 1);
+                inSize[next] = remove(in[next], inSize[next], state, from);
+            }
+            for (int i = 0; i < inSize[state]; i++) {
+                int previous = from[in[state][i]];
+                deleted[previous]++;
+                level[previous] = Math.max(level[previous], level[state] + 1);
+                outSize[previous] = remove(out[previous], outSize[previous], state, to);
+            }
+        }
+
+        // Remove the edges whose end, as given by ends, is the state; return the new size of the list
+        private static int remove(int[] edges, int size, int state, int[] ends) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (ends[edges[i]] != state) edges[kept++] = edges[i];
+            }
+            return kept;
+        }
+
+        // Shortcuts added less edges removed, plus contracted neighbours and depth to keep the hierarchy flat
+        private double priority(int state) {
+            int removed = outSize[state] + inSize[state];
+            return contract(state, true) - removed + deleted[state] + level[state];
+        }
+
+        /**
+         * Find the shortcuts that removing a state needs and add them unless only counting.
+         * @return -- the number of shortcuts needed
+         */
+        private int contract(int state, boolean simulate) {
+            int shortcuts = 0;
+            for (int i = 0; i < inSize[state]; i++) {
+                int into = in[state][i];
+                int u = from[into];
+
+                double longest = -1;
+                for (int j = 0; j < outSize[state]; j++) {
+                    int w = to[out[state][j]];
+                    if (w != u) longest = Math.max(longest, cost[out[state][j]]);
+                }
+                if (longest < 0) continue;
+
+                witnessSearch(u, state, cost[into] + longest);
+                for (int j = 0; j < outSize[state]; j++) {
+                    int onward = out[state][j];
+                    int w = to[onward];
+                    if (w == u) continue;
+                    double via = cost[into] + cost[onward];
+                    if (witness[w] > via) {
+                        shortcuts++;
+                        if (!simulate) shortcut(u, w, via, into, onward);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        // Shortest distances from u to nearby states without passing the state being contracted, up to a limit
+        private void witnessSearch(int u, int avoid, double limit) {
+            for (int i = 0; i < witnessCount; i++) {
+                witness[witnessTouched[i]] = Double.POSITIVE_INFINITY;
+            }
+            witnessCount = 0;
+            witnessHeap.clear();
+
+            witness[u] = 0.0;
+            witnessTouched[witnessCount++] = u;
+            witnessHeap.push(u, 0.0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && witnessHeap.peekKey() <= limit && settled++ < WITNESS_LIMIT) {
+                int state = witnessHeap.pop();
+                for (int i = 0; i < outSize[state]; i++) {
+                    int edge = out[state][i];
+                    int next = to[edge];
+                    if (next == avoid) continue;
+                    double distance = witness[state] + cost[edge];
+                    if (distance < witness[next]) {
+                        if (witness[next] == Double.POSITIVE_INFINITY) {
+                            witnessTouched[witnessCount++] = next;
+                        }
+                        witness[next] = distance;
+                        witnessHeap.push(next, distance);
+                    }
+                }
+            }
+        }
+
+        // Add a shortcut, or improve the edge already joining the two states
+        private void shortcut(int u, int w, double via, int into, int onward) {
+            for (int i = 0; i < outSize[u]; i++) {
+                int edge = out[u][i];
+                if (to[edge] == w) {
+                    if (via < cost[edge]) {
+                        cost[edge] = via;
+                        first[edge] = into;
+                        second[edge] = onward;
+                    }
+                    return;
+                }
+            }
+            addEdge(u, w, via, into, onward);
+        }
+
+        private void addEdge(int u, int w, double edgeCost, int firstEdge, int secondEdge) {
+            if (edgeCount == from.length) {
+                int capacity = 2 * from.length;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                first = Arrays.copyOf(first, capacity);
+                second = Arrays.copyOf(second, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+            }
+            int edge = edgeCount++;
+            from[edge] = u;
+            to[edge] = w;
+            first[edge] = firstEdge;
+            second[edge] = secondEdge;
+            cost[edge] = edgeCost;
+
+            out[u] = grow(out[u], outSize[u]);
+            out[u][outSize[u]++] = edge;
+            in[w] = grow(in[w], inSize[w]);
+            in[w][inSize[w]++] = edge;
+        }
+    }
+}
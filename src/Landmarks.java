@@ -0,0 +1,218 @@
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Landmark tables for goal-directed routing without left turns (the ALT technique).
+ *
+ * A few streets spread around the edge of the map are chosen as landmarks, and the shortest distance from each
+ * landmark to every state and from every state to each landmark is computed once.  Routes obey the triangle
+ * inequality, so for any state s, target t and landmark L the distance from s to t is at least
+ * d(L, t) - d(L, s) and at least d(s, L) - d(t, L).  The largest of these bounds guides the search far better
+ * than the straight line does on maps where the turn rules force long detours.
+ *
+ * The tables belong to one compiled map.  Streets keep their ids when more are added, so the tables of a
+ * bigger map are derived from those of the smaller one by repairing only the distances the new streets change.
+ * Each table costs two doubles per state and landmark.  Tables loaded with a map file are read where the file is
+ * mapped.
+ */
+final class Landmarks {
+    private final RoadGraph map;
+    private final int[] streets;
+    // Distances between landmark i and state s sit at [s * count + i], so the bounds for a state are adjacent
+    private final DoubleBuffer from;
+    private final DoubleBuffer to;
+
+    private Landmarks(RoadGraph map, int[] streets, DoubleBuffer from, DoubleBuffer to) {
+        this.map = map;
+        this.streets = streets;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Choose landmarks on a map and compute their tables.  The first landmark is the street furthest from the
+     * middle of the map and each further one is the street furthest from all landmarks chosen so far.
+     * @param map -- the compiled map
+     * @param count -- the number of landmarks wanted; fewer are chosen if the map has fewer streets
+     */
+    static Landmarks select(RoadGraph map, int count) {
+        if (count < 1) throw new IllegalArgumentException("Invalid Parameter Passed");
+        int streetCount = map.streetCount();
+        int[] streets = new int[Math.min(count, streetCount)];
+
+        double[] midX = new double[streetCount];
+        double[] midY = new double[streetCount];
+        double centreX = 0, centreY = 0;
+        for (int street = 0; street < streetCount; street++) {
+            midX[street] = (map.nodeX(map.tailNode(2 * street)) + map.nodeX(map.headNode(2 * street))) / 2.0;
+            midY[street] = (map.nodeY(map.tailNode(2 * street)) + map.nodeY(map.headNode(2 * street))) / 2.0;
+            centreX += midX[street] / streetCount;
+            centreY += midY[street] / streetCount;
+        }
+
+        // Squared distance from each street to the nearest chosen landmark, or to the middle before any is chosen
+        double[] spread = new double[streetCount];
+        for (int street = 0; street < streetCount; street++) {
+            spread[street] = square(midX[street] - centreX) + square(midY[street] - centreY);
+        }
+        for (int i = 0; i < streets.length; i++) {
+            int furthest = 0;
+            for (int street = 1; street < streetCount; street++) {
+                if (spread[street] > spread[furthest]) furthest = street;
+            }
+            streets[i] = furthest;
+            for (int street = 0; street < streetCount; street++) {
+                double fromLandmark = square(midX[street] - midX[furthest]) + square(midY[street] - midY[furthest]);
+                spread[street] = i == 0 ? fromLandmark : Math.min(spread[street], fromLandmark);
+            }
+        }
+
+        int states = map.stateCount();
+        double[] from = new double[states * streets.length];
+        double[] to = new double[states * streets.length];
+        TurnSearch search = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+        for (int i = 0; i < streets.length; i++) {
+            int[] landmark = {2 * streets[i], 2 * streets[i] + 1};
+            search.run(landmark, -1);
+            interleave(search.distances(), from, i, streets.length);
+            search.runBackward(landmark);
+            interleave(search.distances(), to, i, streets.length);
+        }
+        return new Landmarks(map, streets, DoubleBuffer.wrap(from), DoubleBuffer.wrap(to));
+    }
+
+    /**
+     * Derive the tables of a map that has had streets added to this one's map.
+     * @param bigger -- the compiled map holding this map's streets, with the same ids, followed by new ones
+     * @return -- the tables for the bigger map, with the same landmarks
+     */
+    Landmarks extend(RoadGraph bigger) {
+        if (bigger == map) return this;
+        int count = streets.length;
+        int oldStates = map.stateCount();
+        int states = bigger.stateCount();
+        double[] biggerFrom = new double[states * count];
+        double[] biggerTo = new double[states * count];
+        double[] label = new double[states];
+        TurnSearch search = new TurnSearch(bigger, TurnCostModel.NO_LEFT_TURN);
+        for (int i = 0; i < count; i++) {
+            for (int pass = 0; pass < 2; pass++) {
+                DoubleBuffer table = pass == 0 ? from : to;
+                for (int state = 0; state < oldStates; state++) {
+                    label[state] = table.get(state * count + i);
+                }
+                Arrays.fill(label, oldStates, states, Double.POSITIVE_INFINITY);
+                search.extend(label, oldStates, pass == 1);
+                interleave(label, pass == 0 ? biggerFrom : biggerTo, i, count);
+            }
+        }
+        return new Landmarks(bigger, streets, DoubleBuffer.wrap(biggerFrom), DoubleBuffer.wrap(biggerTo));
+    }
+
+    RoadGraph map() {
+        return map;
+    }
+
+    int count() {
+        return streets.length;
+    }
+
+    /**
+     * Gather the landmark distances of both directions of a target street, as bound expects them.
+     * @param reuse -- an array from an earlier call to fill, or null
+     */
+    double[] target(int targetStreet, double[] reuse) {
+        int count = streets.length;
+        double[] target = reuse != null && reuse.length == 4 * count ? reuse : new double[4 * count];
+        int forward = 2 * targetStreet * count;
+        int backward = forward + count;
+        for (int i = 0; i < count; i++) {
+            target[4 * i] = from.get(forward + i);
+            target[4 * i + 1] = from.get(backward + i);
+            target[4 * i + 2] = to.get(forward + i);
+            target[4 * i + 3] = to.get(backward + i);
+        }
+        return target;
+    }
+
+    /**
+     * Lower bound on the distance from a state to the nearer direction of a target street.
+     * @param target -- the target's distances from target()
+     * @return -- the bound, or positive infinity if the landmarks show the state cannot reach the target
+     */
+    double bound(int state, double[] target) {
+        int count = streets.length;
+        int base = state * count;
+        double best = 0.0;
+        for (int i = 0; i < count; i++) {
+            double fromState = from.get(base + i);
+            double toState = to.get(base + i);
+            double toRight = lower(fromState, toState, target[4 * i], target[4 * i + 2]);
+            double toLeft = lower(fromState, toState, target[4 * i + 1], target[4 * i + 3]);
+            best = Math.max(best, Math.min(toRight, toLeft));
+        }
+        return best;
+    }
+
+    // The triangle inequality bounds through one landmark for one target state, allowing for unreachable states
+    private static double lower(double fromState, double toState, double fromTarget, double toTarget) {
+        double bound = 0.0;
+        if (fromState != Double.POSITIVE_INFINITY) {
+            // The landmark reaches the state, so if it can't reach the target neither can the state
+            bound = fromTarget == Double.POSITIVE_INFINITY ? fromTarget : fromTarget - fromState;
+        }
+        if (toTarget != Double.POSITIVE_INFINITY) {
+            bound = Math.max(bound, toState == Double.POSITIVE_INFINITY ? toState : toState - toTarget);
+        }
+        return bound;
+    }
+
+    // Bytes taken by the tables of the given size when written
+    static long bytes(int count, int states) {
+        return (long) count * Integer.BYTES + 2L * count * states * Double.BYTES;
+    }
+
+    /**
+     * Write the landmark streets and tables at the buffer's position.
+     */
+    void write(ByteBuffer buffer) {
+        for (int street : streets) {
+            buffer.putInt(street);
+        }
+        buffer.asDoubleBuffer().put(from.duplicate()).put(to.duplicate());
+        buffer.position(buffer.position() + (from.limit() + to.limit()) * Double.BYTES);
+    }
+
+    /**
+     * Read tables written by write for the given map from the buffer's position.  The distance tables are views
+     * of the buffer rather than copies.
+     * @return -- the tables, or null if they do not fit the map
+     */
+    static Landmarks read(ByteBuffer buffer, RoadGraph map, int count) {
+        int[] streets = new int[count];
+        for (int i = 0; i < count; i++) {
+            streets[i] = buffer.getInt();
+            if (streets[i] < 0 || streets[i] >= map.streetCount()) return null;
+        }
+        int size = count * map.stateCount();
+        DoubleBuffer from = buffer.asDoubleBuffer();
+        from.limit(size);
+        DoubleBuffer to = buffer.asDoubleBuffer();
+        to.position(size);
+        to = to.slice();
+        to.limit(size);
+        buffer.position(buffer.position() + 2 * size * Double.BYTES);
+        return new Landmarks(map, streets, from, to);
+    }
+
+    private static void interleave(double[] distances, double[] table, int landmark, int count) {
+        for (int state = 0; state < distances.length; state++) {
+            table[state * count + landmark] = distances[state];
+        }
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
@@ -1,9 +1,12 @@
+import java.util.Objects;
+
 /**
  * Identify a location on a map by the street name a side of the street
  */
 public class Location {
-    private String streetId;
-    private StreetSide streetSide;
+    private final String streetId;
+    private final StreetSide streetSide;
+    private final int hash;
 
     /**
      * Create a location on the map
@@ -13,6 +16,7 @@ public class Location {
     public Location( String street, StreetSide whichSide ) {
         streetId = street;
         streetSide = whichSide;
+        hash = 31 * Objects.hashCode(street) + Objects.hashCode(whichSide);
     }
 
     /**
@@ -30,4 +34,20 @@ public class Location {
     public StreetSide getStreetSide() {
         return streetSide;
     }
+
+    /**
+     * Locations are equal when they are on the same side of the same street.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Location)) return false;
+        Location other = (Location) obj;
+        return hash == other.hash && streetSide == other.streetSide && Objects.equals(streetId, other.streetId);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
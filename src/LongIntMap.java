@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from long keys to non-negative int values, used to number intersections by
+ * their packed coordinates without boxing a Long and an Integer per entry.
+ *
+ * Keys are probed linearly in a power-of-two table kept at most half full.  Entries are never removed.
+ */
+final class LongIntMap {
+    private static final int FREE = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Create a map sized to hold the given number of entries without growing.
+     */
+    LongIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the value of a key, or -1 if the key is not in the map.
+     */
+    int get(long key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (values[i] == FREE) return FREE;
+            if (keys[i] == key) return values[i];
+        }
+    }
+
+    /**
+     * Add a key with the given value unless the key is already in the map.
+     * @param value -- the value for a new key; must not be negative
+     * @return -- the value now held for the key
+     */
+    int putIfAbsent(long key, int value) {
+        if (value < 0) throw new IllegalArgumentException("Invalid Parameter Passed");
+        int i = slot(key);
+        for (; values[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) grow();
+        return value;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == FREE) continue;
+            int i = slot(oldKeys[j]);
+            while (values[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, FREE);
+        mask = capacity - 1;
+    }
+
+    // Spread the key so that neighbouring coordinates land far apart in the table
+    private int slot(long key) {
+        long hash = RoadGraph.spread(key);
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -1,4 +1,18 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class MapPlanner {
     /**
@@ -8,25 +22,92 @@ public class MapPlanner {
      */
     private int degree;
     private Location depot;
-    private Map<String, Street> streets;
-    private Map<String, Set<Location>> graph;
-
+    private volatile Map<String, Street> streets;
+    private ArrayList<Street> streetOrder;
+    // The map a planner was opened from with loadMap, until its streets are first needed all at once.  Until then
+    // its streets come before those in streetOrder and become Street objects one at a time, as they are asked for.
+    private volatile RoadGraph loadedMap;
+    private Map<String, Location> depots;
+    private StreetIndex streetIndex;
+
+    // Writers change the map under the lock; queries read the last published snapshot without locking
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile long version;
+    private volatile Snapshot published;
+
+    // The streets meeting at each intersection as getAdjacentStreets and printGraph see them: a compiled map and
+    // the streets added since it was compiled.  Replaced whenever a new map is compiled, so those never compile.
+    private volatile Adjacency adjacency;
+
+    private volatile ShortestPathTree noLeftTurnTree;
+    private Map<String, ShortestPathTree> depotTrees;
+    private volatile ShortestPathTree nearestDepotTree;
+
+    // Landmark tables for the last compiled map, or null until prepareLandmarks is called.  Needs the lock.
+    private Landmarks landmarks;
+
+    // Idle searches kept for reuse by single-destination routes under any turn costs.  Their arrays are
+    // overwritten by the next route, so they never back a ShortestPathTree.
+    private final Queue<TurnSearch> idleSearches = new ConcurrentLinkedQueue<>();
+
+    // Contraction hierarchy for the map it was built from, or null until prepareHierarchy is called.  It is only
+    // used while that map is current, along with idle queries over it.
+    private volatile ContractionHierarchy hierarchy;
+    private final Queue<ContractionHierarchy.Query> idleQueries = new ConcurrentLinkedQueue<>();
+
+    // Routes already found for the current map and depot, or null when caching is off
+    private volatile RouteCache routeCache;
+
+    // No-left-turn components of the last map they were found for.  After streets are added, queries start finding
+    // them again in the background, one pass at a time, and search without them until they are ready.
+    private volatile TurnComponents components;
+    private final AtomicBoolean findingComponents = new AtomicBoolean();
+
+    // Side of a bucket of the street index used to snap coordinates, in metres
+    private static final int SNAP_CELL_SIZE = 250;
+
+    // The single shared instance of every distinct point and location the planner holds or hands out
+    private final Map<Point, Point> pointPool = new ConcurrentHashMap<>();
+    private final Map<Location, Location> locationPool = new ConcurrentHashMap<>();
 
     public MapPlanner(int degrees) {
-        this.streets = new HashMap<>();
+        this.streets = new ConcurrentHashMap<>();
         this.degree = degrees;
-        this.graph = new HashMap<>();
+        this.streetOrder = new ArrayList<>();
+        this.depots = new LinkedHashMap<>();
+        this.streetIndex = new StreetIndex(SNAP_CELL_SIZE);
+        this.depotTrees = new ConcurrentHashMap<>();
+        this.published = new Snapshot(version, new RoadGraph(streetOrder, degree), null, depots, null);
+        this.adjacency = new Adjacency(published.map);
+    }
+
+    /**
+     * Everything a query reads, frozen together.  A query takes one snapshot at its start and uses nothing else,
+     * so it sees a consistent map even while streets and depots are added by other threads.
+     */
+    private static final class Snapshot {
+        final long version;
+        final RoadGraph map;
+        final Location depot;
+        final Map<String, Location> depots;
+        final Landmarks landmarks;
+
+        Snapshot(long version, RoadGraph map, Location depot, Map<String, Location> depots, Landmarks landmarks) {
+            this.version = version;
+            this.map = map;
+            this.depot = depot;
+            this.depots = Collections.unmodifiableMap(new LinkedHashMap<>(depots));
+            this.landmarks = landmarks;
+        }
     }
 
-    private class IntersectionDetails {
-        String intersectionKey;
-        Point turningPoint;
-        Point destinationPoint;
+    private static final class Adjacency {
+        final RoadGraph map;
+        // Locations leaving each intersection along streets that are not in map, added under the planner's lock
+        final Map<Point, List<Location>> added = new ConcurrentHashMap<>();
 
-        IntersectionDetails(String intersectionKey, Point turningPoint, Point destinationPoint) {
-            this.intersectionKey = intersectionKey;
-            this.turningPoint = turningPoint;
-            this.destinationPoint = destinationPoint;
+        Adjacency(RoadGraph map) {
+            this.map = map;
         }
     }
 
@@ -38,12 +119,55 @@ public class MapPlanner {
      */
     public Boolean depotLocation( Location depot ) {
         //added input validation checks
-        if(depot == null || depot.getStreetId()==null || depot.getStreetSide() == null || streets.get(depot.getStreetId())== null )return false;
+        if(depot == null || depot.getStreetId()==null || depot.getStreetSide() == null || getStreet(depot.getStreetId())== null )return false;
+
+        writeLock.lock();
+        try {
+            this.depot = intern(depot);
+            mapChanged();
+        } finally {
+            writeLock.unlock();
+        }
+        return true;
+    }
 
-        this.depot = depot;
+    /**
+     * Register one of several named depots that share this map.  Named depots are separate from the depot set
+     * with depotLocation, which remains the start of routeNoLeftTurn and furthestStreet.
+     * @param name -- unique name of the depot
+     * @param depot -- the street ID and side of the street (left or right) where we find the depot
+     * @return -- true if the depot was added.  False if the name is taken or the location is not on the map.
+     */
+    public Boolean addDepot( String name, Location depot ) {
+        if (name == null || name.isEmpty()) return false;
+        if (depot == null || depot.getStreetId() == null || depot.getStreetSide() == null || getStreet(depot.getStreetId()) == null) return false;
+
+        writeLock.lock();
+        try {
+            if (depots.containsKey(name)) return false;
+            depots.put(name, intern(depot));
+            // No street changed, so the version, the other depots' trees and cached routes all stay valid;
+            // only the tree grown from every depot at once is missing the new one
+            nearestDepotTree = null;
+            Snapshot current = published;
+            if (current.version == version) {
+                published = new Snapshot(version, current.map, this.depot, depots, current.landmarks);
+            }
+        } finally {
+            writeLock.unlock();
+        }
         return true;
     }
 
+    /**
+     * Return the location of a named depot
+     * @param name -- the name given to addDepot
+     * @return -- the location of the depot, or null if there is no depot by that name
+     */
+    public Location getDepot( String name ) {
+        return name == null ? null : snapshot().depots.get(name);
+    }
+
     /**
      * Add a street to our map of the city.  The street is identified by the unique street id.
      * Although the parameters indicate a start and an end to the street, the street is bi-directional.
@@ -64,364 +188,994 @@ public class MapPlanner {
             return false;
         }
 
-        // Check if the street already exists
-        if (streets.containsKey(streetId)) {
+        writeLock.lock();
+        try {
+            // Check if the street already exists
+            if (getStreet(streetId) != null) {
+                return false;
+            }
+            unfold();
+
+            // Create and add the new street
+            Street newStreet = new Street( streetId,intern(start), intern(end));
+            streets.put(streetId, newStreet);
+            streetOrder.add(newStreet);
+            streetIndex.add(newStreet);
+            addAdjacent(adjacency, newStreet);
+            mapChanged();
+        } finally {
+            writeLock.unlock();
+        }
+
+        return true;
+    }
+
+
+
+    /**
+     * Add every street listed in a file to the map.  See loadStreets(Reader) for the format.
+     * @param file -- the street file, in UTF-8
+     * @return -- true if all the streets were added.  False if the file can't be read or any line is invalid,
+     * in which case no street is added.
+     */
+    public Boolean loadStreets(Path file) {
+        if (file == null) return false;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return loadStreets(reader);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Add many streets to the map at once, reading one street per line as "id, x1, y1, x2, y2": the unique
+     * street id followed by the start and end coordinates in metres.  The id may itself contain commas since the
+     * coordinates are read from the end of the line.  Blank lines and lines starting with # are skipped.
+     *
+     * The streets are added together, so queries see either none or all of them, and the compiled map is
+     * rebuilt once for the whole load rather than per street.
+     * @param source -- the street lines; the caller closes it
+     * @return -- true if all the streets were added.  False if the source can't be read, a line is malformed or
+     * an id is repeated in the source or already on the map, in which case no street is added.
+     */
+    public Boolean loadStreets(Reader source) {
+        if (source == null) return false;
+
+        // Parse everything before taking the lock, rejecting ids repeated within the source on the way
+        List<Street> loaded = new ArrayList<>();
+        Set<String> loadedIds = new HashSet<>();
+        try {
+            BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source, 1 << 16);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') continue;
+                Street street = parseStreet(line);
+                if (street == null || !loadedIds.add(street.getId())) return false;
+                loaded.add(street);
+            }
+        } catch (IOException e) {
             return false;
         }
 
-        // Create and add the new street
-        Street newStreet = new Street( streetId,start, end);
-        streets.put(streetId, newStreet);
+        writeLock.lock();
+        try {
+            for (Street street : loaded) {
+                if (getStreet(street.getId()) != null) return false;
+            }
+            unfold();
+            addAll(loaded);
+        } finally {
+            writeLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Save the streets of the map to a binary map file that loadMap can open.  Depots are not saved.
+     * @param file -- where to write the map; an existing file is replaced
+     * @return -- true if the map was saved.  False if the file could not be written.
+     */
+    public Boolean saveMap(Path file) {
+        if (file == null) return false;
+        writeLock.lock();
+        try {
+            Snapshot current = publish();
+            current.map.save(file, current.landmarks);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-        // Update graph
-        addToGraph(start.toString(), newStreet,StreetSide.Right);
-        addToGraph(end.toString(), newStreet,StreetSide.Left);
+    /**
+     * Prepare the map for fast single-destination routes without left turns.  The given number of streets
+     * around the edge of the map are chosen as landmarks and the distances to and from them are computed, which
+     * takes a full search per landmark and two doubles per landmark and street direction.  routeNoLeftTurn then
+     * uses the landmarks to steer its search.  The tables are kept up to date as streets are added, and are
+     * saved and loaded with the map.
+     * @param count -- the number of landmarks; a handful, such as 8, is usually enough
+     * @return -- true if the landmarks were computed.  False if the map has no streets.
+     */
+    public Boolean prepareLandmarks(int count) {
+        if (count < 1) throw new IllegalArgumentException("Invalid Parameter Passed");
+        writeLock.lock();
+        try {
+            Snapshot current = publish();
+            if (current.map.streetCount() == 0) return false;
+            landmarks = Landmarks.select(current.map, count);
+            published = new Snapshot(version, current.map, depot, depots, landmarks);
+        } finally {
+            writeLock.unlock();
+        }
+        return true;
+    }
 
+    /**
+     * Prepare the finished map for the fastest single-destination routes without left turns.  A contraction
+     * hierarchy is built over the street directions of the map, which takes a while, and routeNoLeftTurn then
+     * answers each route with two small searches, giving the same route lengths as before.  The hierarchy is
+     * dropped when a street is added, so call this again once the map is complete.
+     * @return -- true if the hierarchy was built.  False if the map has no streets.
+     */
+    public Boolean prepareHierarchy() {
+        RoadGraph map;
+        writeLock.lock();
+        try {
+            map = publish().map;
+        } finally {
+            writeLock.unlock();
+        }
+        if (map.streetCount() == 0) return false;
+        hierarchy = ContractionHierarchy.build(map);
         return true;
     }
 
+    /**
+     * Keep the most recently used routes so that repeated requests for the same destination are answered without
+     * a search.  routeNoLeftTurn and routeWithTurnCosts share the cache, telling turn cost models apart by
+     * identity.  Cached routes are forgotten whenever a street is added or the depot changes.  Setting a new size
+     * starts an empty cache with fresh counters.
+     * @param capacity -- the number of routes to keep; 0 turns caching off
+     */
+    public void setRouteCacheSize(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Invalid Parameter Passed");
+        routeCache = capacity == 0 ? null : new RouteCache(capacity);
+    }
 
+    /**
+     * The route cache with its hit, miss and eviction counters, or null when caching is off.
+     */
+    public RouteCache routeCache() {
+        return routeCache;
+    }
 
     /**
-     *  Given a depot location, return the street id of the street that is the furthest away from the depot by distance,
-     *  allowing for left turns to get to the street.
+     * Create a planner from a map file written by saveMap.  The compiled map is used where the file is mapped, so
+     * the planner is ready to route without compiling its streets or building an object per street; streets
+     * become objects as routes and lookups need them.  Streets can be added to it as usual, which, like the first
+     * snapToStreet, first builds every street of the file.
+     * @param file -- the map file
+     * @return -- the planner holding the saved streets, with the degree tolerance they were saved with, or null
+     * if the file can't be read or is not a map file
      */
-    public String furthestStreet() {
-        // Return null if depot is not set
-        if (this.depot == null) {
+    public static MapPlanner loadMap(Path file) {
+        if (file == null) return null;
+        RoadGraph map;
+        try {
+            map = RoadGraph.load(file);
+        } catch (IOException e) {
             return null;
         }
 
-        String result = null;
-        double maxDistance = -1.0;
-
-        // Initialize route from depot
-        Route currentRoute = new Route(this);
-        currentRoute.appendTurn(TurnDirection.Straight, this.depot.getStreetId());
+        MapPlanner mapPlanner = new MapPlanner(map.getDegree());
+        mapPlanner.writeLock.lock();
+        try {
+            mapPlanner.loadedMap = map;
+            mapPlanner.mapChanged();
+            mapPlanner.landmarks = map.storedLandmarks();
+            mapPlanner.published = new Snapshot(mapPlanner.version, map, null, mapPlanner.depots, mapPlanner.landmarks);
+            mapPlanner.adjacency = new Adjacency(map);
+        } finally {
+            mapPlanner.writeLock.unlock();
+        }
+        return mapPlanner;
+    }
 
-        // Data structures for tracking visited streets and routes
-        Map<String, Integer> visitedStreets = new HashMap<>();
-        Stack<Location> locationStack = new Stack<>();
-        Map<String, Double> shortestDistances = new HashMap<>();
-        Map<String, Route> recordedRoutes = new HashMap<>();
+    // Make every street of the loaded map a Street of the planner's own and index them for snapping, as adding
+    // streets or snapping a point needs.  Needs the lock.
+    private void unfold() {
+        RoadGraph loaded = loadedMap;
+        if (loaded == null) return;
+        // Nothing is added to streetOrder before a loaded map is unfolded
+        streetOrder.ensureCapacity(loaded.streetCount());
+        for (int street = 0; street < loaded.streetCount(); street++) {
+            Street unfolded = street(loaded, street);
+            streetOrder.add(unfolded);
+            streetIndex.add(unfolded);
+        }
+        loadedMap = null;
+    }
 
-        // Set up initial location and visited status
-        Location presentLocation = this.depot;
-        visitedStreets.put(this.depot.getStreetId(), 0);
-        shortestDistances.put(depot.getStreetId(), 0.0);
-        recordedRoutes.put(presentLocation.getStreetId(), currentRoute);
+    // The Street of a street of a compiled map, made from the map's tables the first time it is asked for
+    Street street(RoadGraph map, int street) {
+        String streetId = map.streetId(street);
+        Street found = streets.get(streetId);
+        if (found != null) return found;
+        int start = map.tailNode(2 * street);
+        int end = map.headNode(2 * street);
+        Street made = new Street(streetId, intern(new Point(map.nodeX(start), map.nodeY(start))),
+                intern(new Point(map.nodeX(end), map.nodeY(end))));
+        found = streets.putIfAbsent(streetId, made);
+        return found == null ? made : found;
+    }
 
-        // Determine starting intersection key
-        String intersectionKey;
-        if (this.depot.getStreetSide() == StreetSide.Right) {
-            intersectionKey = streets.get(presentLocation.getStreetId()).endCords();
+    // Add streets known to be new and publish a map compiled with them.  Needs the lock.
+    private void addAll(List<Street> loaded) {
+        // Grow the maps once to their final size instead of rehashing them repeatedly while adding
+        int total = streetOrder.size() + loaded.size();
+        Map<String, Street> presizedStreets = new ConcurrentHashMap<>(total);
+        presizedStreets.putAll(streets);
+        streetOrder.ensureCapacity(total);
+
+        for (Street street : loaded) {
+            Point start = intern(street.getStart());
+            Point end = intern(street.getEnd());
+            if (start != street.getStart() || end != street.getEnd()) {
+                street = new Street(street.getId(), start, end);
+            }
+            presizedStreets.put(street.getId(), street);
+            streetOrder.add(street);
+            streetIndex.add(street);
         }
-        else {
-            intersectionKey = streets.get(presentLocation.getStreetId()).startCords();
+        streets = presizedStreets;
+        mapChanged();
+        publish();
+    }
+
+    // Parse an "id, x1, y1, x2, y2" line, or return null if it is malformed
+    private static Street parseStreet(String line) {
+        int[] coordinates = new int[4];
+        int end = line.length();
+        for (int i = 3; i >= 0; i--) {
+            int comma = line.lastIndexOf(',', end - 1);
+            if (comma < 0) return null;
+            try {
+                coordinates[i] = Integer.parseInt(line.substring(comma + 1, end).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            end = comma;
         }
+        String streetId = line.substring(0, end).trim();
+        if (streetId.isEmpty()) return null;
+        return new Street(streetId, new Point(coordinates[0], coordinates[1]), new Point(coordinates[2], coordinates[3]));
+    }
 
-        // Get adjacent locations and add to stack
-        Set<Location> adjacentLocations = graph.get(intersectionKey);
-        for (Location loc : adjacentLocations) {
-            if (!loc.getStreetId().equals(this.depot.getStreetId())) {
-                locationStack.push(loc);
+    /**
+     * Find the street nearest to an arbitrary point, such as a customer's address, and the side of that street
+     * the point is on.  The side follows the street's start to end: points to the left of that direction are
+     * on the Left side, all others on the Right side.
+     * @param point -- the coordinates to snap, in metres
+     * @return -- the location on the nearest street, or null if the point is missing or the map has no streets
+     */
+    public Location snapToStreet(Point point) {
+        if (point == null) return null;
+        if (loadedMap != null) {
+            // The streets of a loaded map are only indexed for snapping once a point is snapped
+            writeLock.lock();
+            try {
+                unfold();
+            } finally {
+                writeLock.unlock();
             }
         }
+        Location snapped = streetIndex.snap(point);
+        return snapped == null ? null : intern(snapped);
+    }
 
-        // Main loop for exploring routes
-        while (!locationStack.isEmpty()) {
-            Location nextLocation = locationStack.peek();
-            String upcomingStreetId = nextLocation.getStreetId();
+    /**
+     *  Given a depot location, return the street id of the street that is the furthest away from the depot by distance,
+     *  allowing for left turns to get to the street.  On a tie the street added last wins.
+     */
+    public String furthestStreet() {
+        Map<String, Double> furthest = furthestStreets(1);
+        return furthest == null || furthest.isEmpty() ? null : furthest.keySet().iterator().next();
+    }
 
-            // Determine departure point
-            Point departurePoint;
-            if (presentLocation.getStreetSide() == StreetSide.Right) {
-                departurePoint = streets.get(presentLocation.getStreetId()).getStart();
-            } else {
-                departurePoint = streets.get(presentLocation.getStreetId()).getEnd();
-            }
+    /**
+     * Find the streets furthest from the depot by the shortest route that makes no U-turns, in one search that
+     * keeps only the streets furthest so far as the others are settled.
+     * @param count -- the number of streets wanted
+     * @return -- up to count street ids with their distances, furthest first, the street added last winning a
+     * tie.  Null if the depot is not set.
+     */
+    public Map<String, Double> furthestStreets(int count) {
+        if (count < 1) throw new IllegalArgumentException("Invalid Parameter Passed");
+        Snapshot snapshot = snapshot();
+        if (snapshot.depot == null) {
+            return null;
+        }
 
-            IntersectionDetails details = getIntersectionDetails(nextLocation, upcomingStreetId);
-            String nextIntersectionKey = details.intersectionKey;
-            Point turningPoint = details.turningPoint;
-            Point destinationPoint = details.destinationPoint;
-
-            Set<Location> nextAdjacentLocations = graph.get(nextIntersectionKey);
-
-            // Determine turn type and update current location
-            TurnDirection turnType = departurePoint.turnType(turningPoint, destinationPoint, this.degree);
-            presentLocation = nextLocation;
-
-            // Check if turn is valid and can be appended
-            if (turnType != TurnDirection.UTurn && currentRoute.appendTurn(turnType, upcomingStreetId)) {
-                double routeLength = currentRoute.length();
-
-                // Check if street has been visited before
-                if (visitedStreets.containsKey(upcomingStreetId)) {
-                    SubRoute subRouteInstance = new SubRoute(recordedRoutes.get(upcomingStreetId), 1, visitedStreets.get(upcomingStreetId), this);
-                    Route alternateRoute = subRouteInstance.extractRoute();
-                    double previousLength = alternateRoute.length();
-
-                    // Backtrack if new path is not shorter
-                    if (previousLength <= routeLength) {
-                        currentRoute = new SubRoute(currentRoute, 1, currentRoute.legs() - 1, this).extractRoute();
-                        presentLocation = updatePresentLocation(currentRoute);
-                        locationStack.pop();
-                        continue;
-                    }
-                }
+        RoadGraph map = snapshot.map;
+        int[] furthest = new int[Math.min(count, map.streetCount())];
+        double[] distances = new double[furthest.length];
+        TurnSearch search = idleSearch(map, TurnCostModel.NO_U_TURN);
+        int found;
+        try {
+            found = search.furthest(map.state(snapshot.depot), furthest, distances);
+        } finally {
+            idleSearches.offer(search);
+        }
 
-                // Update visited streets and distances
-                visitedStreets.put(upcomingStreetId, currentRoute.legs());
-                shortestDistances.put(upcomingStreetId, routeLength);
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i = 0; i < found; i++) {
+            result.put(map.streetId(furthest[i]), distances[i]);
+        }
+        return result;
+    }
 
-                // Store current route
-                try {
-                    SubRoute subRouteInstance = new SubRoute(currentRoute, 1, currentRoute.legs(), this);
-                    Route routeSnapshot = subRouteInstance.extractRoute();
-                    recordedRoutes.put(upcomingStreetId, routeSnapshot);
-                } catch (Exception e) {
-                    return null;
-                }
+    /**
+     * Find every location the depot can reach without left turns within a distance budget, in one search that
+     * stops where the budget runs out.  A location is reachable when its street can be driven on that side, the
+     * direction the depot's own location gives, by a route no longer than the budget, measured the same way as
+     * Route.length().  A street is in the result on either side exactly when routeNoLeftTurn to it is within the
+     * budget.
+     * @param budget -- the longest route allowed, in metres
+     * @return -- the reachable locations, nearest first, or null if the depot is not set
+     */
+    public Set<Location> reachableWithin(double budget) {
+        if (!(budget >= 0.0)) throw new IllegalArgumentException("Invalid Parameter Passed");
+        Snapshot snapshot = snapshot();
+        if (snapshot.depot == null) {
+            return null;
+        }
 
-                // Handle dead-ends
-                if (nextAdjacentLocations == null || nextAdjacentLocations.isEmpty()) {
-                    locationStack.pop();
+        RoadGraph map = snapshot.map;
+        Set<Location> reachable = new LinkedHashSet<>();
+        TurnSearch search = idleSearch(map, TurnCostModel.NO_LEFT_TURN);
+        try {
+            for (int state : search.within(map.state(snapshot.depot), budget)) {
+                if (search.distance(state) <= budget) {
+                    reachable.add(intern(new Location(map.streetId(RoadGraph.street(state)), RoadGraph.side(state))));
                 }
+            }
+        } finally {
+            idleSearches.offer(search);
+        }
+        return reachable;
+    }
+
+    /**
+     * Find where the area the depot can reach without left turns within a distance budget ends: the streets
+     * that can be driven onto within the budget but not to their far end.  Each is given as the location of
+     * the direction it is driven in and how far along it the budget reaches, from the end it is entered at.
+     * The depot's own street is driven from its middle.
+     * @param budget -- the longest route allowed, in metres
+     * @return -- the partly reachable streets with the metres of each that can be driven, nearest first, or
+     * null if the depot is not set
+     */
+    public Map<Location, Double> reachableBoundary(double budget) {
+        if (!(budget >= 0.0)) throw new IllegalArgumentException("Invalid Parameter Passed");
+        Snapshot snapshot = snapshot();
+        if (snapshot.depot == null) {
+            return null;
+        }
 
-                // Add unexplored adjacent streets to stack
-                for (Location loc : nextAdjacentLocations) {
-                    if (!loc.getStreetId().equals(upcomingStreetId)) {
-                        locationStack.push(loc);
-                    }
+        RoadGraph map = snapshot.map;
+        Map<Location, Double> boundary = new LinkedHashMap<>();
+        TurnSearch search = idleSearch(map, TurnCostModel.NO_LEFT_TURN);
+        try {
+            for (int state : search.within(map.state(snapshot.depot), budget)) {
+                double length = map.length(RoadGraph.street(state));
+                double entered = search.distance(state) - length / 2;
+                if (entered + length > budget) {
+                    Location location = new Location(map.streetId(RoadGraph.street(state)), RoadGraph.side(state));
+                    boundary.put(intern(location), budget - entered);
                 }
-            } else {
-                // Backtrack if turn is invalid
-                currentRoute = new SubRoute(currentRoute, 1, currentRoute.legs() - 1, this).extractRoute();
-                presentLocation = updatePresentLocation(currentRoute);
-                locationStack.pop();
             }
+        } finally {
+            idleSearches.offer(search);
         }
+        return boundary;
+    }
 
-        // Find the farthest street
-        for (Map.Entry<String, Double> entry : shortestDistances.entrySet()) {
-            String streetIdentifier = entry.getKey();
-            Double distanceValue = entry.getValue();
+    /**
+     * Compute a route to the given destination from the depot without making any left turns.
+     * The route is the shortest one, found with a Dijkstra search over the (street, direction) states of the
+     * compiled map, and ends on the target street in whichever direction is reached first.
+     * @param targetLocation The destination for the route
+     * @return The route to the destination, or null if no route exists
+     */
+    public Route routeNoLeftTurn(Location targetLocation) {
+        // Check if depot is set
+        Snapshot snapshot = snapshot();
+        if (snapshot.depot == null || targetLocation == null) {
+            return null;
+        }
+
+        // Answer from the tree of all routes when one is already computed for this depot
+        ShortestPathTree tree = noLeftTurnTree;
+        if (tree != null && tree.version() == snapshot.version) {
+            return tree.route(targetLocation);
+        }
+
+        RoadGraph map = snapshot.map;
+        int target = map.streetIndex(targetLocation.getStreetId());
+        if (target < 0) {
+            return null;
+        }
 
-            if (Double.compare(distanceValue, maxDistance) > 0) {
-                maxDistance = distanceValue;
-                result = streetIdentifier;
+        int start = map.state(snapshot.depot);
+        RouteCache cache = routeCache;
+        int[] states = cache == null ? null : cache.get(snapshot.version, start, target, TurnCostModel.NO_LEFT_TURN);
+        if (states == null) {
+            states = noLeftTurnStates(snapshot, start, target);
+            if (cache != null) {
+                cache.put(snapshot.version, start, target, TurnCostModel.NO_LEFT_TURN, states == null ? RouteCache.UNREACHABLE : states);
             }
         }
 
-        return result;
+        // Return the path to the destination
+        return states == null || states == RouteCache.UNREACHABLE ? null : buildRoute(map, states);
     }
 
-    //method to update present location
-    private Location updatePresentLocation(Route route) {
-        if (streets.get(route.turnOnto(route.legs())).getStart().equals(route.legs.get(route.legs()).startPoint)) {
-            return new Location(route.turnOnto(route.legs()), StreetSide.Right);
-        } else {
-            return new Location(route.turnOnto(route.legs()), StreetSide.Left);
+    // The states of the shortest no-left-turn route from a start state to a target street, or null if none
+    private int[] noLeftTurnStates(Snapshot snapshot, int start, int target) {
+        // Most unreachable targets are ruled out without searching everything the depot can reach
+        RoadGraph map = snapshot.map;
+        TurnComponents known = knownComponents(map);
+        if (known != null && !known.mayReachStreet(start, target)) {
+            return null;
         }
-    }
 
-    //method to get the instersectins based on left or right side of the street
-    private IntersectionDetails getIntersectionDetails(Location location, String streetId) {
-        Street street = streets.get(streetId);
-        if (location.getStreetSide() == StreetSide.Right) {
-            return new IntersectionDetails(
-                    street.endCords(),
-                    street.getStart(),
-                    street.getEnd()
-            );
-        } else {
-            return new IntersectionDetails(
-                    street.startCords(),
-                    street.getEnd(),
-                    street.getStart()
-            );
+        // Climb the hierarchy from both ends when one is prepared for this map
+        ContractionHierarchy prepared = hierarchy;
+        if (prepared != null && prepared.map() == map) {
+            ContractionHierarchy.Query query = idleQuery(prepared);
+            try {
+                return query.route(start, target);
+            } finally {
+                idleQueries.offer(query);
+            }
+        }
+
+        // Head straight for the target street rather than searching the whole map
+        TurnSearch search = idleSearch(map, TurnCostModel.NO_LEFT_TURN);
+        try {
+            int arrival = search.runToward(start, target, snapshot.landmarks);
+            return arrival < 0 ? null : search.path(arrival);
+        } finally {
+            idleSearches.offer(search);
         }
     }
 
     /**
-     * Compute a route to the given destination from the depot without making any left turns.
+     * Compute the cheapest route from the depot to the given destination when turns have costs.  The route
+     * minimises the length driven plus the cost of every turn taken, so a left turn costing 30 metres is taken
+     * only when avoiding it means driving more than 30 metres further.  Turns the model bans are never taken.
+     * The route ends on the target street in whichever direction is cheaper to reach.
      * @param targetLocation The destination for the route
+     * @param model The cost of each turn
      * @return The route to the destination, or null if no route exists
      */
-    public Route routeNoLeftTurn(Location targetLocation) {
-        // Check if depot is set
-        if (this.depot == null) {
+    public Route routeWithTurnCosts(Location targetLocation, TurnCostModel model) {
+        if (model == null) throw new IllegalArgumentException("Invalid Parameter Passed");
+        Snapshot snapshot = snapshot();
+        if (snapshot.depot == null || targetLocation == null) {
             return null;
         }
 
-        String farthestStreet = null;
-        double maxDistance = -1.0;
+        RoadGraph map = snapshot.map;
+        int target = map.streetIndex(targetLocation.getStreetId());
+        if (target < 0) {
+            return null;
+        }
 
-        // Initialize the route from the depot
-        Route currentPath = new Route(this);
-        currentPath.appendTurn(TurnDirection.Straight, this.depot.getStreetId());
+        int start = map.state(snapshot.depot);
+        RouteCache cache = routeCache;
+        int[] states = cache == null ? null : cache.get(snapshot.version, start, target, model);
+        if (states == null) {
+            TurnSearch search = idleSearch(map, model);
+            try {
+                int arrival = search.runToward(start, target, snapshot.landmarks);
+                states = arrival < 0 ? RouteCache.UNREACHABLE : search.path(arrival);
+            } finally {
+                idleSearches.offer(search);
+            }
+            if (cache != null) {
+                cache.put(snapshot.version, start, target, model, states);
+            }
+        }
+        return states == RouteCache.UNREACHABLE ? null : buildRoute(map, states);
+    }
 
-        // Initialize data structures for tracking
-        Map<String, Integer> exploredStreets = new HashMap<>();
-        Map<String, Double> distanceToStreet = new HashMap<>();
-        Map<String, Route> pathToStreet = new HashMap<>();
-        Stack<Location> locationStack = new Stack<>();
+    /**
+     * Compute the same route as routeNoLeftTurn by searching from both ends at once: forwards from the depot
+     * and backwards from the target street over the turns in reverse, meeting in the middle.  On long routes
+     * across the map this settles far fewer streets than a search from the depot alone, without needing any
+     * preparation of the map or a sense of direction.
+     * @param targetLocation The destination for the route
+     * @return The route to the destination, or null if no route exists
+     */
+    public Route routeNoLeftTurnBidirectional(Location targetLocation) {
+        Snapshot snapshot = snapshot();
+        if (snapshot.depot == null || targetLocation == null) {
+            return null;
+        }
 
-        Location currentSpot = this.depot;
-        exploredStreets.put(this.depot.getStreetId(), 0);
-        pathToStreet.put(currentSpot.getStreetId(), currentPath);
+        RoadGraph map = snapshot.map;
+        int target = map.streetIndex(targetLocation.getStreetId());
+        if (target < 0) {
+            return null;
+        }
 
-        // Determine the starting intersection key
-        String intersectionKey = (this.depot.getStreetSide() == StreetSide.Right)
-                ? streets.get(currentSpot.getStreetId()).endCords()
-                : streets.get(currentSpot.getStreetId()).startCords();
+        int start = map.state(snapshot.depot);
+        TurnComponents known = knownComponents(map);
+        if (known != null && !known.mayReachStreet(start, target)) {
+            return null;
+        }
 
-        // Get adjacent locations and add them to the stack
-        Set<Location> adjacentLocations = graph.get(intersectionKey);
-        for (Location loc : adjacentLocations) {
-            if (!loc.getStreetId().equals(this.depot.getStreetId())) {
-                locationStack.push(loc);
-            }
+        TurnSearch search = idleSearch(map, TurnCostModel.NO_LEFT_TURN);
+        try {
+            int[] states = search.runBidirectional(start, target);
+            return states == null ? null : buildRoute(map, states);
+        } finally {
+            idleSearches.offer(search);
         }
+    }
 
-        // Main loop for path finding
-        while (!locationStack.isEmpty()) {
-            Location nextStreet = locationStack.peek();
-            String nextStreetId = nextStreet.getStreetId();
+    // The no-left-turn components of a map if they have been found, or null.  Otherwise they are found on the
+    // common pool, so a route never waits for a pass over the whole map.
+    TurnComponents knownComponents(RoadGraph map) {
+        TurnComponents current = components;
+        if (current != null && current.map() == map) return current;
+        if (findingComponents.compareAndSet(false, true)) {
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    components(map);
+                } finally {
+                    findingComponents.set(false);
+                }
+            });
+        }
+        return null;
+    }
 
-            // Determine turn points
-            Point turnOrigin = (currentSpot.getStreetSide() == StreetSide.Right)
-                    ? streets.get(currentSpot.getStreetId()).getStart()
-                    : streets.get(currentSpot.getStreetId()).getEnd();
+    // The no-left-turn components of a map, found now if they are not known yet
+    private TurnComponents components(RoadGraph map) {
+        TurnComponents current = components;
+        if (current == null || current.map() != map) {
+            current = TurnComponents.of(map);
+            components = current;
+        }
+        return current;
+    }
 
-            String nextIntersectionKey;
-            Point turnMidpoint, turnDestination;
+    /**
+     * Report how the map falls apart under the no-left-turn rule, to find streets that trap or cannot be
+     * reached by routes without left turns.  Every street direction belongs to exactly one component, and any
+     * direction in a component can be driven to from any other in it without a left turn or U-turn.  A healthy
+     * map has one large component; small ones point at missing streets or one-way traps.
+     * @return -- the components as the locations of their street directions, largest first
+     */
+    public List<Set<Location>> turnComponents() {
+        RoadGraph map = snapshot().map;
+        TurnComponents found = components(map);
+        List<Set<Location>> report = new ArrayList<>();
+        for (int i = 0; i < found.count(); i++) {
+            report.add(new LinkedHashSet<>());
+        }
+        for (int state = 0; state < map.stateCount(); state++) {
+            Location location = new Location(map.streetId(RoadGraph.street(state)), RoadGraph.side(state));
+            report.get(found.component(state)).add(intern(location));
+        }
+        report.sort((a, b) -> Integer.compare(b.size(), a.size()));
+        return report;
+    }
 
-            if (nextStreet.getStreetSide() == StreetSide.Right) {
-                nextIntersectionKey = streets.get(nextStreetId).endCords();
-                turnMidpoint = streets.get(nextStreetId).getStart();
-                turnDestination = streets.get(nextStreetId).getEnd();
-            } else {
-                nextIntersectionKey = streets.get(nextStreetId).startCords();
-                turnMidpoint = streets.get(nextStreetId).getEnd();
-                turnDestination = streets.get(nextStreetId).getStart();
+    // Take an idle search over the given map with the given turn costs, dropping those left over from older maps
+    private TurnSearch idleSearch(RoadGraph map, TurnCostModel model) {
+        TurnSearch search;
+        while ((search = idleSearches.poll()) != null) {
+            if (search.map() == map) {
+                search.useTurnCosts(model);
+                return search;
             }
+        }
+        return new TurnSearch(map, model);
+    }
 
-            Set<Location> nextAdjacentLocations = graph.get(nextIntersectionKey);
+    // Take an idle query over the given hierarchy, dropping those left over from older ones
+    private ContractionHierarchy.Query idleQuery(ContractionHierarchy prepared) {
+        ContractionHierarchy.Query query;
+        while ((query = idleQueries.poll()) != null) {
+            if (query.hierarchy() == prepared) return query;
+        }
+        return prepared.newQuery();
+    }
 
-            TurnDirection turnType = turnOrigin.turnType(turnMidpoint, turnDestination, this.degree);
-            currentSpot = nextStreet;
+    /**
+     * Compute the routes without left turns from the depot to every street in a single search.  The tree is
+     * kept and reused, including by routeNoLeftTurn, until a street is added or the depot changes.
+     * @return the tree of routes from the depot, or null if the depot is not set
+     */
+    public ShortestPathTree noLeftTurnTree() {
+        Snapshot snapshot = snapshot();
+        if (snapshot.depot == null) {
+            return null;
+        }
 
-            // Check if the turn is valid (not U-turn or Left) and can be appended
-            if (turnType != TurnDirection.UTurn && turnType != TurnDirection.Left && currentPath.appendTurn(turnType, nextStreetId)) {
-                double pathLength = currentPath.length();
+        ShortestPathTree tree = noLeftTurnTree;
+        if (tree == null || tree.version() != snapshot.version) {
+            RoadGraph map = snapshot.map;
+            TurnSearch search = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+            search.run(map.state(snapshot.depot), -1);
+            tree = new ShortestPathTree(this, map, snapshot.depot, snapshot.version, search.distances(), search.parents());
+            noLeftTurnTree = tree;
+        }
+        return tree;
+    }
 
-                // Check if we've visited this street before
-                if (exploredStreets.containsKey(nextStreetId)) {
-                    SubRoute subPath = new SubRoute(pathToStreet.get(nextStreetId), 1, exploredStreets.get(nextStreetId), this);
-                    Route alternativePath = subPath.extractRoute();
-                    double previousLength = alternativePath.length();
+    /**
+     * Find the named depot with the shortest route to the destination that makes no left turns.  All depots are
+     * searched together in one pass, which is kept and reused until a street or depot is added.
+     * @param targetLocation The destination
+     * @return the name of the nearest depot, or null if no depot can reach the destination
+     */
+    public String nearestDepot(Location targetLocation) {
+        ShortestPathTree tree = nearestDepotTree(snapshot());
+        return tree == null ? null : tree.nearestDepot(targetLocation);
+    }
 
-                    // If the new path is not shorter, backtrack
-                    if (previousLength <= pathLength) {
-                        currentPath = new SubRoute(currentPath, 1, currentPath.legs() - 1, this).extractRoute();
-                        currentSpot = determineNewLocation(currentPath);
-                        locationStack.pop();
-                        continue;
-                    }
-                }
+    /**
+     * Compute a route without left turns from the nearest named depot to the destination.
+     * @param targetLocation The destination for the route
+     * @return The route to the destination, or null if no depot can reach it
+     */
+    public Route routeFromNearestDepot(Location targetLocation) {
+        ShortestPathTree tree = nearestDepotTree(snapshot());
+        return tree == null ? null : tree.route(targetLocation);
+    }
 
-                // Update explored streets and distances
-                exploredStreets.put(nextStreetId, currentPath.legs());
-                distanceToStreet.put(nextStreetId, pathLength);
+    /**
+     * Compute a route without left turns from a named depot to the destination.
+     * @param depotName The name of the depot to start from
+     * @param targetLocation The destination for the route
+     * @return The route to the destination, or null if there is no such depot or no route exists
+     */
+    public Route routeFromDepot(String depotName, Location targetLocation) {
+        ShortestPathTree tree = depotTree(depotName);
+        return tree == null ? null : tree.route(targetLocation);
+    }
 
-                // Store the current path
-                try {
-                    SubRoute subPath = new SubRoute(currentPath, 1, currentPath.legs(), this);
-                    Route storedPath = subPath.extractRoute();
-                    pathToStreet.put(nextStreetId, storedPath);
-                } catch (Exception e) {
-                    return null;
-                }
+    /**
+     * Compute the routes without left turns from a named depot to every street.  As with noLeftTurnTree, the
+     * tree is kept and reused until a street is added or the depot changes; adding other named depots keeps it.
+     * @param depotName The name of the depot to start from
+     * @return the tree of routes from the depot, or null if there is no such depot
+     */
+    public ShortestPathTree depotTree(String depotName) {
+        Snapshot snapshot = snapshot();
+        if (depotName == null || !snapshot.depots.containsKey(depotName)) {
+            return null;
+        }
 
-                // Handle dead-ends
-                if (nextAdjacentLocations == null || nextAdjacentLocations.isEmpty()) {
-                    locationStack.pop();
-                }
+        ShortestPathTree tree = depotTrees.get(depotName);
+        if (tree == null || tree.version() != snapshot.version) {
+            tree = growDepotTree(snapshot, depotName);
+            depotTrees.put(depotName, tree);
+        }
+        return tree;
+    }
 
-                // Add unexplored adjacent streets to the stack
-                for (Location loc : nextAdjacentLocations) {
-                    if (!loc.getStreetId().equals(nextStreetId)) {
-                        locationStack.push(loc);
-                    }
-                }
-            } else {
-                // Backtrack if the turn is invalid
-                if (turnType != TurnDirection.Left) {
-                    currentPath = new SubRoute(currentPath, 1, currentPath.legs() - 1, this).extractRoute();
-                    currentSpot = determineNewLocation(currentPath);
-                }
-                locationStack.pop();
+    // Search the whole map from one named depot.  Only reads the snapshot, so trees can be grown in parallel.
+    private ShortestPathTree growDepotTree(Snapshot snapshot, String depotName) {
+        RoadGraph map = snapshot.map;
+        Location depotLocation = snapshot.depots.get(depotName);
+        TurnSearch search = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+        search.run(map.state(depotLocation), -1);
+        return new ShortestPathTree(this, map, depotLocation, snapshot.version, search.distances(), search.parents(),
+                new String[]{depotName}, search.origins());
+    }
+
+    /**
+     * Compute routes without left turns from the depot to many destinations, building the routes in parallel.
+     * @param targetLocations The destinations for the routes
+     * @param parallelism The number of threads to use
+     * @return The routes, in the order of the destinations, with null for each destination that cannot be
+     * reached; or null if the depot is not set
+     */
+    public List<Route> routeNoLeftTurn(List<Location> targetLocations, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Invalid Parameter Passed");
+        if (targetLocations == null) return null;
+
+        ShortestPathTree tree = noLeftTurnTree();
+        if (tree == null) return null;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> targetLocations.parallelStream()
+                    .map(tree::route)
+                    .collect(Collectors.toList())).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Compute routes without left turns for many (depot, destination) pairs.  The search from each distinct
+     * depot runs once, with the depots searched in parallel over the compiled map, and the routes are then
+     * built in parallel.
+     * @param depotNames The named depot each route starts from
+     * @param targetLocations The destination of each route; must be as long as depotNames
+     * @param parallelism The number of threads to use
+     * @return The routes, in order, with null where the depot is unknown or the destination cannot be reached;
+     * or null if the lists are missing or of different lengths
+     */
+    public List<Route> routeFromDepots(List<String> depotNames, List<Location> targetLocations, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Invalid Parameter Passed");
+        if (depotNames == null || targetLocations == null || depotNames.size() != targetLocations.size()) return null;
+
+        // Depots whose tree has to be grown for this batch
+        Snapshot snapshot = snapshot();
+        Set<String> stale = new LinkedHashSet<>();
+        Map<String, ShortestPathTree> trees = new HashMap<>();
+        for (String name : depotNames) {
+            ShortestPathTree tree = name == null ? null : depotTrees.get(name);
+            if (tree != null && tree.version() == snapshot.version) {
+                trees.put(name, tree);
+            } else if (name != null && snapshot.depots.containsKey(name)) {
+                stale.add(name);
             }
         }
 
-        // Find the farthest street (not used in this method, but kept for consistency)
-        for (Map.Entry<String, Double> entry : distanceToStreet.entrySet()) {
-            String streetId = entry.getKey();
-            Double distance = entry.getValue();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Map<String, ShortestPathTree> grown = pool.submit(() -> stale.parallelStream()
+                    .collect(Collectors.toConcurrentMap(name -> name, name -> growDepotTree(snapshot, name)))).join();
+            depotTrees.putAll(grown);
+            trees.putAll(grown);
+
+            return pool.submit(() -> IntStream.range(0, depotNames.size()).parallel()
+                    .mapToObj(i -> {
+                        ShortestPathTree tree = depotNames.get(i) == null ? null : trees.get(depotNames.get(i));
+                        return tree == null ? null : tree.route(targetLocations.get(i));
+                    })
+                    .collect(Collectors.toList())).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // The tree grown from all named depots at once, or null if there are none
+    private ShortestPathTree nearestDepotTree(Snapshot snapshot) {
+        if (snapshot.depots.isEmpty()) {
+            return null;
+        }
 
-            if (Double.compare(distance, maxDistance) > 0) {
-                maxDistance = distance;
-                farthestStreet = streetId;
+        ShortestPathTree tree = nearestDepotTree;
+        if (tree == null || tree.version() != snapshot.version || tree.depotCount() != snapshot.depots.size()) {
+            RoadGraph map = snapshot.map;
+            String[] names = snapshot.depots.keySet().toArray(new String[0]);
+            int[] starts = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                starts[i] = map.state(snapshot.depots.get(names[i]));
             }
+            TurnSearch search = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+            search.run(starts, -1);
+            tree = new ShortestPathTree(this, map, null, snapshot.version, search.distances(), search.parents(), names, search.origins());
+            nearestDepotTree = tree;
         }
+        return tree;
+    }
 
-        // Return the path to the destination
-        return pathToStreet.get(targetLocation.getStreetId());
+    /**
+     * Turn a sequence of states from the compiled map into a Route.
+     */
+    Route buildRoute(RoadGraph map, int[] states) {
+        Route route = new Route(this);
+        for (int i = 0; i < states.length; i++) {
+            TurnDirection turn = i == 0 ? TurnDirection.Straight : map.turn(states[i - 1], states[i]);
+            route.appendLeg(turn, street(map, RoadGraph.street(states[i])), RoadGraph.reversed(states[i]));
+        }
+        return route;
+    }
+
+    /**
+     * Freeze the current map into a compiled snapshot with int ids for streets and intersections.  The snapshot
+     * is cached and reused by the searches until the next street is added.  This waits for any street being
+     * added right now, so the snapshot always includes every street added before the call.
+     * @return -- the compiled snapshot of the map
+     */
+    public RoadGraph compile() {
+        writeLock.lock();
+        try {
+            return publish().map;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Helper method to determine the new location after backtracking
+     * The snapshot queries should run against.  It never waits for writers: when another thread is adding a
+     * street the last published snapshot is returned, which is consistent but may miss that street.
      */
-    private Location determineNewLocation(Route route) {
-        if (streets.get(route.turnOnto(route.legs())).getStart().equals(route.legs.get(route.legs()).startPoint)) {
-            return new Location(route.turnOnto(route.legs()), StreetSide.Right);
-        } else {
-            return new Location(route.turnOnto(route.legs()), StreetSide.Left);
+    private Snapshot snapshot() {
+        Snapshot current = published;
+        if (current.version == version || !writeLock.tryLock()) {
+            return current;
+        }
+        try {
+            return publish();
+        } finally {
+            writeLock.unlock();
         }
     }
 
-    private void addToGraph(String point, Street street, StreetSide side) {
-        graph.computeIfAbsent(point, k -> new HashSet<>());
-        graph.get(point).add(new Location(street.getId(),side) );
+    // Publish a snapshot of the current map, recompiling the streets only if some were added.  Needs the lock.
+    private Snapshot publish() {
+        Snapshot current = published;
+        if (current.version != version) {
+            // A loaded map holds every street until one is added, which unfolds it into streetOrder
+            int streetCount = loadedMap != null ? loadedMap.streetCount() : streetOrder.size();
+            RoadGraph map = current.map.streetCount() == streetCount ? current.map : new RoadGraph(streetOrder, degree);
+            if (landmarks != null) {
+                landmarks = landmarks.extend(map);
+            }
+            current = new Snapshot(version, map, depot, depots, landmarks);
+            published = current;
+            if (adjacency.map != map) {
+                adjacency = new Adjacency(map);
+            }
+        }
+        return current;
     }
 
     public void printGraph() {
+        Adjacency current = adjacency;
+        RoadGraph map = current.map;
         System.out.println("Graph representation:");
-        for (Map.Entry<String, Set<Location>> entry : graph.entrySet()) {
-            String intersection = entry.getKey();
-            Set<Location> connectedStreets = entry.getValue();
-
-            System.out.print("Point " + intersection + " connects to: ");
-            for (Location location : connectedStreets) {
+        for (int node = 0; node < map.intersectionCount(); node++) {
+            System.out.print("Point " + map.nodeX(node) + "," + map.nodeY(node) + " connects to: ");
+            for (int slot = map.firstOut(node); slot < map.endOut(node); slot++) {
+                System.out.print(" Street : " + map.streetId(RoadGraph.street(map.outState(slot))) );
+            }
+            List<Location> added = current.added.get(new Point(map.nodeX(node), map.nodeY(node)));
+            if (added != null) {
+                for (Location location : added) {
+                    System.out.print(" Street : " + location.getStreetId() );
+                }
+            }
+            System.out.println();
+        }
+        // Intersections only streets added since the last compile reach
+        for (Map.Entry<Point, List<Location>> entry : current.added.entrySet()) {
+            if (map.node(entry.getKey().getX(), entry.getKey().getY()) >= 0) continue;
+            System.out.print("Point " + entry.getKey() + " connects to: ");
+            for (Location location : entry.getValue()) {
                 System.out.print(" Street : " + location.getStreetId() );
             }
             System.out.println();
         }
     }
 
+    // Record that the streets or the depot changed, so that cached routes are recomputed.  Needs the lock.
+    private void mapChanged() {
+        version++;
+        noLeftTurnTree = null;
+        depotTrees.clear();
+        nearestDepotTree = null;
+    }
+
+    // The number of changes made to the streets and depot so far
+    long getVersion() {
+        return version;
+    }
+
+    // The number of named depots in the last published snapshot
+    int depotCount() {
+        return published.depots.size();
+    }
+
+    /**
+     * List the streets that meet at an intersection, with the side that is driven leaving the intersection:
+     * Right for streets that start there and Left for streets that end there.
+     * @param intersection -- the coordinates of the intersection written as Point.toString() does, "x,y"
+     * @return -- the streets at the intersection, or null if no street starts or ends there
+     */
     public Set<Location> getAdjacentStreets(String intersection) {
-        return graph.getOrDefault(intersection,null);
+        if (intersection == null) return null;
+        int comma = intersection.indexOf(',');
+        if (comma < 0) return null;
+        int x, y;
+        try {
+            x = Integer.parseInt(intersection.substring(0, comma));
+            y = Integer.parseInt(intersection.substring(comma + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        // Read the last compiled map and the streets added since, rather than compiling for one intersection
+        Adjacency current = adjacency;
+        RoadGraph map = current.map;
+        int node = map.node(x, y);
+        List<Location> added = current.added.get(new Point(x, y));
+        if (node < 0 && added == null) return null;
+        Set<Location> adjacent = new HashSet<>();
+        if (node >= 0) {
+            for (int slot = map.firstOut(node); slot < map.endOut(node); slot++) {
+                int state = map.outState(slot);
+                adjacent.add(intern(new Location(map.streetId(RoadGraph.street(state)), RoadGraph.side(state))));
+            }
+        }
+        if (added != null) {
+            adjacent.addAll(added);
+        }
+        return adjacent;
+    }
+
+    // List a street added after the adjacency's map was compiled at both its ends.  Needs the lock.
+    private void addAdjacent(Adjacency current, Street street) {
+        current.added.computeIfAbsent(street.getStart(), k -> new CopyOnWriteArrayList<>())
+                .add(intern(new Location(street.getId(), StreetSide.Right)));
+        current.added.computeIfAbsent(street.getEnd(), k -> new CopyOnWriteArrayList<>())
+                .add(intern(new Location(street.getId(), StreetSide.Left)));
+    }
+
+    // The pooled instance equal to the given point, adding the point to the pool if it is new
+    Point intern(Point point) {
+        Point pooled = pointPool.putIfAbsent(point, point);
+        return pooled == null ? point : pooled;
+    }
+
+    // The pooled instance equal to the given location, adding the location to the pool if it is new
+    Location intern(Location location) {
+        Location pooled = locationPool.putIfAbsent(location, location);
+        return pooled == null ? location : pooled;
     }
 
     Street getStreet(String streetId){
-        if(streetId == null || streets.get(streetId) == null )return null;
-        return streets.get(streetId);
+        if(streetId == null) return null;
+        Street street = streets.get(streetId);
+        if (street != null) return street;
+        RoadGraph loaded = loadedMap;
+        // Look again if the loaded map was unfolded meanwhile
+        if (loaded == null) return streets.get(streetId);
+        int index = loaded.streetIndex(streetId);
+        return index < 0 ? null : street(loaded, index);
     }
 
     int getDegree(){return degree;}
 
+    /**
+     * Classify the turn from the end of a leg onto a street, driving the street towards its end when forward is
+     * true and towards its start otherwise.  The turn is read from the turn table of the last published map when
+     * the leg covers a whole street of it and both streets are in it; the map is never recompiled for one turn.
+     */
+    TurnDirection turnType(Leg from, Street onto, boolean forward) {
+        RoadGraph map = published.map;
+        Street street = getStreet(from.getStreetTurnedOnto());
+        int fromStreet = map.streetIndex(from.getStreetTurnedOnto());
+        int ontoStreet = map.streetIndex(onto.getId());
+        boolean along = street != null && from.getStartPoint().equals(street.getStart()) && from.getEndPoint().equals(street.getEnd());
+        boolean against = street != null && from.getStartPoint().equals(street.getEnd()) && from.getEndPoint().equals(street.getStart());
+        if ((along || against) && fromStreet >= 0 && ontoStreet >= 0) {
+            int ontoState = forward ? 2 * ontoStreet : 2 * ontoStreet + 1;
+            return map.turn(along ? 2 * fromStreet : 2 * fromStreet + 1, ontoState);
+        }
+        // Streets that meet end to end can be classified from their cached lengths
+        if ((along || against) && from.getEndPoint().equals(forward ? onto.getStart() : onto.getEnd())) {
+            return street.turnOnto(along, onto, forward, Point.tolerance(degree));
+        }
+        Point at = from.getEndPoint();
+        Point to = forward ? onto.getEnd() : onto.getStart();
+        return Point.turnType(from.getStartPoint().getX(), from.getStartPoint().getY(), at.getX(), at.getY(), to.getX(), to.getY(),
+                Point.tolerance(degree));
+    }
+
     MapPlanner getMapPlanner(){
         return this;
     }
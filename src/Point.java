@@ -2,7 +2,16 @@
  * Capture a two-dimensional (x, y) point, with integer coordinates.
  */
 public class Point {
-    private int x, y;
+    // Sine of every whole degree tolerance from 0 to 180, so turnType need not call Math.sin per turn
+    private static final double[] SINES = new double[181];
+    static {
+        for (int degree = 0; degree < SINES.length; degree++) {
+            SINES[degree] = Math.sin( (degree/180.0)*Math.PI );
+        }
+    }
+
+    private final int x, y;
+    private final int hash;
 
     /**
      * Create a point at a given location.
@@ -12,6 +21,7 @@ public class Point {
     public Point( int x, int y ) {
         this.x = x;
         this.y = y;
+        this.hash = Long.hashCode(RoadGraph.spread(RoadGraph.key(x, y)));
     }
 
     /**
@@ -35,7 +45,7 @@ public class Point {
      * @param to -- the target destination point to which we want to know the distance
      * @return -- the distance
      */
-     Double distanceTo( Point to ) {
+     double distanceTo( Point to ) {
          //changed the formula to use Math.hypot to calcualte for large number for double
          return Math.hypot(to.x - this.x, to.y - this.y);
     }
@@ -51,22 +61,54 @@ public class Point {
      * @return -- one of Left, Right, Straight, or UTurn
      */
     public TurnDirection turnType( Point turnAt, Point turnTo, int degreeTolerance ) {
+        return turnType( this.x, this.y, turnAt.x, turnAt.y, turnTo.x, turnTo.y, tolerance( degreeTolerance ) );
+    }
+
+    /**
+     * The sine of a degree tolerance, as the primitive forms of turnType take it.
+     */
+    static double tolerance( int degreeTolerance ) {
+        if (degreeTolerance >= 0 && degreeTolerance < SINES.length) return SINES[degreeTolerance];
         /* The sine function asks for radians, so we must convert our degree measure to radians. */
-        Double tolerance = Math.sin( (degreeTolerance/180.0)*Math.PI );
+        return Math.sin( (degreeTolerance/180.0)*Math.PI );
+    }
 
-        /* Conceptually make vectors this -> turnAt and turnAt -> turnTo.  The sine of the angle between
+    /**
+     * Primitive form of turnType for callers that already hold raw coordinates, such as the compiled
+     * RoadGraph.  The tolerance is the sine of the degree tolerance so that it can be computed once per map.
+     * @return -- one of Left, Right, Straight, or UTurn; null if either leg has no length
+     */
+    static TurnDirection turnType( int fromX, int fromY, int atX, int atY, int toX, int toY, double tolerance ) {
+        /* Conceptually make vectors from -> turnAt and turnAt -> turnTo.  The sine of the angle between
          * these vectors defines how much of a turn and the sign of that sine tells us if it is to the left
          * or the right.
          */
-        Double firstLeg = distanceTo( turnAt );
-        Double secondLeg = turnAt.distanceTo( turnTo );
-        Double turnSize = ((this.y - turnAt.y)*(turnTo.x - this.x) + (turnAt.x - this.x)*(turnTo.y - this.y)) / (firstLeg * secondLeg);
+        return turnType( atX - fromX, atY - fromY, Math.hypot( atX - fromX, atY - fromY ),
+                toX - atX, toY - atY, Math.hypot( toX - atX, toY - atY ), tolerance );
+    }
+
+    /**
+     * Form of turnType for callers that already know the length of both legs, such as a street's cached
+     * length, so that classifying a turn takes a few multiplications and no square root.  The legs are given
+     * as the integer steps in x and y, which keeps the test for driving straight on exact.
+     * @param inX -- x step of the leg driven into the turn
+     * @param inY -- y step of the leg driven into the turn
+     * @param inLength -- length of that leg
+     * @param outX -- x step of the leg driven out of the turn
+     * @param outY -- y step of the leg driven out of the turn
+     * @param outLength -- length of that leg
+     * @param tolerance -- the sine of the degree tolerance
+     * @return -- one of Left, Right, Straight, or UTurn; null if either leg has no length
+     */
+    static TurnDirection turnType( int inX, int inY, double inLength, int outX, int outY, double outLength, double tolerance ) {
+        /* The cross product of the legs over their lengths is the sine of the angle between them. */
+        double turnSize = ((double) inX*outY - (double) inY*outX) / (inLength * outLength);
 
         if (Math.abs(turnSize) <= tolerance) {
             /* Small angle.  Look to the sign of the cosine of the angle between the vectors to determine
              * if we're going ahead or turning around.
              */
-            if ( ((turnAt.x - this.x)*(turnTo.x - turnAt.x) + (turnAt.y - this.y)*(turnTo.y - turnAt.y)) >= 0.0 ) {
+            if ( ((double) inX*outX + (double) inY*outY) >= 0.0 ) {
                 return TurnDirection.Straight;
             } else {
                 return TurnDirection.UTurn;
@@ -80,8 +122,21 @@ public class Point {
     }
 
 
-    public boolean equals(Point obj2) {
-        return (this.getX() == obj2.getX() && this.getY() == obj2.getY());
+    /**
+     * Points are equal when they have the same coordinates.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Point)) return false;
+        Point other = (Point) obj;
+        return x == other.x && y == other.y;
+    }
+
+    // Computed once; points are hashed on every lookup of the interning pool and of Route.loops
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
     //added to String method to retive the coordinates for use in furthestStreet and routeNoLeftTurn
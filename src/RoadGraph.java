@@ -0,0 +1,662 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * An immutable, compiled snapshot of the streets in a MapPlanner.
+ *
+ * Streets and intersections are given dense int ids so that the searches never have to hash strings.
+ * Every street can be driven in two directions, and each direction is a "state" of the search:
+ * state = street * 2 for driving start -> end (the Right side of the street, as in Location) and
+ * street * 2 + 1 for driving end -> start (the Left side).
+ *
+ * The states that leave each intersection are kept in compressed-sparse-row form: the states leaving
+ * intersection n are outState[firstOut[n]] .. outState[firstOut[n+1] - 1].
+ *
+ * Streets never move once added, so the turn between every pair of streets meeting at an intersection is
+ * classified once, when the snapshot is compiled.  Intersection n with k exits owns a k x k block of turnTable
+ * starting at turnOffset[n]; row i is arriving on the reverse of exit i and column j is leaving by exit j.
+ *
+ * A snapshot can be saved to a binary map file and loaded back without compiling the streets again.  The file
+ * is a header followed by the snapshot's tables, stored as they are held in memory, and optionally by the
+ * landmark tables computed for the snapshot.  The tables are held as buffers, which for a compiled snapshot wrap
+ * arrays and for a loaded one are views of the memory-mapped file, so loading reads no table into the heap.
+ */
+public final class RoadGraph {
+    private final int degree;
+    private final double tolerance;
+    private final int streetCount;
+
+    // Street ids as strings for a compiled snapshot, or null when they are only in idBytes
+    private final String[] streetIds;
+    // The UTF-8 id of street i is idBytes[idOffset[i] .. idOffset[i+1]), or both are null for a compiled snapshot
+    private final IntBuffer idOffset;
+    private final ByteBuffer idBytes;
+    // Open-addressing table of street ids probed linearly from the id's hash; free slots hold -1
+    private final IntBuffer idHash;
+
+    // The tables of a compiled snapshot, or null for a loaded one
+    private final int[] startNode, endNode;
+    private final double[] length;
+    private final int[] nodeX, nodeY;
+    private final int[] firstOut;
+    private final int[] outState;
+    private final int[] exitIndex;
+    private final int[] turnOffset;
+    private final byte[] turnTable;
+
+    // The same tables as views of the mapped file for a loaded snapshot, or null for a compiled one.  They are
+    // read by absolute index only, so the views are shared freely between threads.
+    private final IntBuffer startNodeView, endNodeView;
+    private final DoubleBuffer lengthView;
+    private final IntBuffer nodeXView, nodeYView;
+    private final IntBuffer firstOutView;
+    private final IntBuffer outStateView;
+    private final IntBuffer exitIndexView;
+    private final IntBuffer turnOffsetView;
+    private final ByteBuffer turnTableView;
+
+    // Intersections by packed coordinates; built on first use for a loaded snapshot
+    private volatile LongIntMap nodeIndex;
+
+    // Landmark tables read from the map file this snapshot was loaded from, if the file held any
+    private Landmarks storedLandmarks;
+
+    private static final TurnDirection[] TURNS = TurnDirection.values();
+    private static final byte NO_TURN = -1;
+
+    // "RNLT", then the layout version of the map file.  Version 2 added the landmark tables.  Version 3 stores
+    // everything little-endian, as most machines hold numbers, and adds the id hash table, so that every table
+    // of the file can be used where it is mapped.
+    private static final int FILE_MAGIC = 0x524E4C54;
+    private static final int FILE_VERSION = 3;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+
+    /**
+     * Freeze the given streets into a snapshot.  Street ids follow the order of the list, so a street keeps its
+     * int id across compiles as long as streets are only ever appended.
+     * @param streets -- the streets of the map, in insertion order
+     * @param degree -- the degree tolerance used to tell a turn from straight-on driving
+     */
+    RoadGraph(List<Street> streets, int degree) {
+        int count = streets.size();
+        this.degree = degree;
+        this.tolerance = Point.tolerance(degree);
+        this.streetCount = count;
+
+        streetIds = new String[count];
+        startNode = new int[count];
+        endNode = new int[count];
+        length = new double[count];
+
+        // Number the intersections in the order they are first seen
+        LongIntMap nodeIndex = new LongIntMap(count);
+        int[] xs = new int[Math.max(2 * count, 1)];
+        int[] ys = new int[xs.length];
+        for (int i = 0; i < count; i++) {
+            Street street = streets.get(i);
+            streetIds[i] = street.getId();
+            length[i] = street.getLength();
+
+            Point start = street.getStart();
+            Point end = street.getEnd();
+            startNode[i] = nodeIndex.putIfAbsent(key(start.getX(), start.getY()), nodeIndex.size());
+            xs[startNode[i]] = start.getX();
+            ys[startNode[i]] = start.getY();
+            endNode[i] = nodeIndex.putIfAbsent(key(end.getX(), end.getY()), nodeIndex.size());
+            xs[endNode[i]] = end.getX();
+            ys[endNode[i]] = end.getY();
+        }
+        int nodes = nodeIndex.size();
+        nodeX = Arrays.copyOf(xs, nodes);
+        nodeY = Arrays.copyOf(ys, nodes);
+        this.nodeIndex = nodeIndex;
+        idOffset = null;
+        idBytes = null;
+        idHash = IntBuffer.wrap(hashIds(streetIds));
+        startNodeView = endNodeView = nodeXView = nodeYView = firstOutView = outStateView = exitIndexView = turnOffsetView = null;
+        lengthView = null;
+        turnTableView = null;
+
+        // Count the states leaving every intersection, then fill the rows
+        firstOut = new int[nodes + 1];
+        for (int i = 0; i < count; i++) {
+            firstOut[startNode[i] + 1]++;
+            firstOut[endNode[i] + 1]++;
+        }
+        for (int n = 0; n < nodes; n++) {
+            firstOut[n + 1] += firstOut[n];
+        }
+        outState = new int[2 * count];
+        int[] fill = Arrays.copyOf(firstOut, nodes);
+        for (int i = 0; i < count; i++) {
+            outState[fill[startNode[i]]++] = 2 * i;
+            outState[fill[endNode[i]]++] = 2 * i + 1;
+        }
+
+        // Remember where each state sits in the row of the intersection it leaves
+        exitIndex = new int[2 * count];
+        for (int n = 0; n < nodes; n++) {
+            for (int slot = firstOut[n]; slot < firstOut[n + 1]; slot++) {
+                exitIndex[outState[slot]] = slot - firstOut[n];
+            }
+        }
+
+        // Classify every turn at every intersection
+        turnOffset = new int[nodes + 1];
+        for (int n = 0; n < nodes; n++) {
+            int exits = firstOut[n + 1] - firstOut[n];
+            turnOffset[n + 1] = turnOffset[n] + exits * exits;
+        }
+        turnTable = new byte[turnOffset[nodes]];
+        for (int n = 0; n < nodes; n++) {
+            int exits = firstOut[n + 1] - firstOut[n];
+            for (int in = 0; in < exits; in++) {
+                // The state arriving at n is the reverse of the one leaving along the same street
+                int arriving = outState[firstOut[n] + in] ^ 1;
+                Street from = streets.get(street(arriving));
+                for (int out = 0; out < exits; out++) {
+                    int leaving = outState[firstOut[n] + out];
+                    TurnDirection turn = from.turnOnto(!reversed(arriving), streets.get(street(leaving)), !reversed(leaving), tolerance);
+                    turnTable[turnOffset[n] + in * exits + out] = turn == null ? NO_TURN : (byte) turn.ordinal();
+                }
+            }
+        }
+    }
+
+    // A snapshot over tables read back from a map file
+    private RoadGraph(int degree, int streetCount, String[] streetIds, IntBuffer idOffset, ByteBuffer idBytes, IntBuffer idHash,
+                      IntBuffer startNode, IntBuffer endNode, DoubleBuffer length, IntBuffer nodeX, IntBuffer nodeY,
+                      IntBuffer firstOut, IntBuffer outState, IntBuffer exitIndex, IntBuffer turnOffset, ByteBuffer turnTable) {
+        this.degree = degree;
+        this.tolerance = Point.tolerance(degree);
+        this.streetCount = streetCount;
+        this.streetIds = streetIds;
+        this.idOffset = idOffset;
+        this.idBytes = idBytes;
+        this.idHash = idHash;
+        this.startNodeView = startNode;
+        this.endNodeView = endNode;
+        this.lengthView = length;
+        this.nodeXView = nodeX;
+        this.nodeYView = nodeY;
+        this.firstOutView = firstOut;
+        this.outStateView = outState;
+        this.exitIndexView = exitIndex;
+        this.turnOffsetView = turnOffset;
+        this.turnTableView = turnTable;
+        this.startNode = this.endNode = this.nodeX = this.nodeY = this.firstOut = this.outState = this.exitIndex = this.turnOffset = null;
+        this.length = null;
+        this.turnTable = null;
+    }
+
+    /**
+     * Write the snapshot to a binary map file, replacing the file if it exists.
+     * @param file -- where to write the map
+     */
+    void save(Path file) throws IOException {
+        save(file, null);
+    }
+
+    /**
+     * Write the snapshot and its landmark tables to a binary map file, replacing the file if it exists.
+     * @param file -- where to write the map
+     * @param landmarks -- the landmark tables of this snapshot, or null to save the map alone
+     */
+    void save(Path file, Landmarks landmarks) throws IOException {
+        if (landmarks != null && landmarks.map() != this) throw new IllegalArgumentException("Invalid Parameter Passed");
+        int landmarkCount = landmarks == null ? 0 : landmarks.count();
+        int streets = streetCount;
+        int nodes = intersectionCount();
+        byte[][] ids = new byte[streets][];
+        int idBytes = 0;
+        for (int i = 0; i < streets; i++) {
+            ids[i] = streetId(i).getBytes(StandardCharsets.UTF_8);
+            idBytes += ids[i].length;
+        }
+
+        // Header, the doubles, the ints, then the bytes, so that every table starts aligned to its element size
+        int turns = turnOffset(nodes);
+        long size = fileSize(FILE_VERSION, streets, nodes, turns, idBytes) + Landmarks.bytes(landmarkCount, stateCount());
+        if (size > Integer.MAX_VALUE) throw new IOException("Map too large to save: " + size + " bytes");
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(degree).putInt(streets).putInt(nodes)
+                .putInt(turns).putInt(idBytes).putInt(landmarkCount);
+        for (int i = 0; i < streets; i++) {
+            buffer.putDouble(length(i));
+        }
+        for (int i = 0; i < streets; i++) {
+            buffer.putInt(tailNode(2 * i));
+        }
+        for (int i = 0; i < streets; i++) {
+            buffer.putInt(headNode(2 * i));
+        }
+        for (int n = 0; n < nodes; n++) {
+            buffer.putInt(nodeX(n));
+        }
+        for (int n = 0; n < nodes; n++) {
+            buffer.putInt(nodeY(n));
+        }
+        for (int n = 0; n <= nodes; n++) {
+            buffer.putInt(firstOut(n));
+        }
+        for (int slot = 0; slot < 2 * streets; slot++) {
+            buffer.putInt(outState(slot));
+        }
+        for (int state = 0; state < 2 * streets; state++) {
+            buffer.putInt(exitIndex(state));
+        }
+        for (int n = 0; n <= nodes; n++) {
+            buffer.putInt(turnOffset(n));
+        }
+        int idEnd = 0;
+        buffer.putInt(idEnd);
+        for (byte[] id : ids) {
+            idEnd += id.length;
+            buffer.putInt(idEnd);
+        }
+        for (int slot = 0; slot < idHash.limit(); slot++) {
+            buffer.putInt(idHash.get(slot));
+        }
+        for (int turn = 0; turn < turns; turn++) {
+            buffer.put(turnCode(turn));
+        }
+        for (byte[] id : ids) {
+            buffer.put(id);
+        }
+        if (landmarks != null) {
+            landmarks.write(buffer);
+        }
+        buffer.flip();
+
+        // Loaded snapshots read the file where it is mapped, so an old file is replaced, never rewritten in place
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Open a snapshot saved by save.  The file is memory-mapped and the snapshot reads its tables straight from
+     * the mapped region, so nothing is copied or recompiled and pages are only read as they are used.  The
+     * tables are checked once for ids out of range.  Files of versions 1 and 2 lack the id hash table, which is
+     * then built on the heap.
+     * @param file -- the map file
+     * @return -- the snapshot stored in the file, with storedLandmarks() set if the file holds landmark tables
+     * @throws IOException -- if the file can't be read or is not a map file of a known version
+     */
+    static RoadGraph load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) throw new IOException("Not a map file: " + file);
+            // The mapping stays valid once the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // Versions 1 and 2 were written big-endian
+            int magic = buffer.getInt();
+            if (magic == Integer.reverseBytes(FILE_MAGIC)) {
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (magic != FILE_MAGIC) {
+                throw new IOException("Not a map file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > FILE_VERSION) throw new IOException("Unsupported map file version " + version + ": " + file);
+            if ((version >= 3) != (buffer.order() == ByteOrder.LITTLE_ENDIAN)) throw new IOException("Corrupt map file: " + file);
+            int degree = buffer.getInt();
+            int streets = buffer.getInt();
+            int nodes = buffer.getInt();
+            int turns = buffer.getInt();
+            int idBytes = buffer.getInt();
+            // Version 1 files left this word zero
+            int landmarkCount = buffer.getInt();
+            if (streets < 0 || nodes < 0 || turns < 0 || idBytes < 0 || landmarkCount < 0
+                    || fileSize(version, streets, nodes, turns, idBytes) + Landmarks.bytes(landmarkCount, 2 * streets) != size) {
+                throw new IOException("Corrupt map file: " + file);
+            }
+
+            int offset = HEADER_BYTES;
+            DoubleBuffer length = region(buffer, offset, streets * Double.BYTES).asDoubleBuffer();
+            offset += streets * Double.BYTES;
+            IntBuffer startNode = ints(buffer, offset, streets);
+            IntBuffer endNode = ints(buffer, offset += streets * Integer.BYTES, streets);
+            IntBuffer nodeX = ints(buffer, offset += streets * Integer.BYTES, nodes);
+            IntBuffer nodeY = ints(buffer, offset += nodes * Integer.BYTES, nodes);
+            IntBuffer firstOut = ints(buffer, offset += nodes * Integer.BYTES, nodes + 1);
+            IntBuffer outState = ints(buffer, offset += (nodes + 1) * Integer.BYTES, 2 * streets);
+            IntBuffer exitIndex = ints(buffer, offset += 2 * streets * Integer.BYTES, 2 * streets);
+            IntBuffer turnOffset = ints(buffer, offset += 2 * streets * Integer.BYTES, nodes + 1);
+            IntBuffer idOffset = ints(buffer, offset += (nodes + 1) * Integer.BYTES, streets + 1);
+            offset += (streets + 1) * Integer.BYTES;
+            IntBuffer idHash = null;
+            if (version >= 3) {
+                idHash = ints(buffer, offset, hashSize(streets));
+                offset += hashSize(streets) * Integer.BYTES;
+            }
+            ByteBuffer turnTable = region(buffer, offset, turns);
+            ByteBuffer ids = region(buffer, offset += turns, idBytes);
+            offset += idBytes;
+
+            if (!consistent(streets, nodes, startNode, endNode, firstOut, outState, exitIndex, turnOffset, turnTable)
+                    || !consistentIds(streets, idBytes, idOffset, idHash)) {
+                throw new IOException("Corrupt map file: " + file);
+            }
+            String[] streetIds = null;
+            if (idHash == null) {
+                streetIds = new String[streets];
+                for (int i = 0; i < streets; i++) {
+                    streetIds[i] = decode(ids, idOffset.get(i), idOffset.get(i + 1));
+                }
+                idHash = IntBuffer.wrap(hashIds(streetIds));
+            }
+            RoadGraph map = new RoadGraph(degree, streets, streetIds, idOffset, ids, idHash, startNode, endNode, length,
+                    nodeX, nodeY, firstOut, outState, exitIndex, turnOffset, turnTable);
+            if (landmarkCount > 0) {
+                map.storedLandmarks = Landmarks.read(region(buffer, offset, (int) (size - offset)), map, landmarkCount);
+                if (map.storedLandmarks == null) throw new IOException("Corrupt map file: " + file);
+            }
+            return map;
+        }
+    }
+
+    // A view of bytes [offset, offset + bytes) of a buffer, in the buffer's byte order
+    private static ByteBuffer region(ByteBuffer buffer, int offset, int bytes) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + bytes);
+        view.position(offset);
+        return view.slice().order(buffer.order());
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, int offset, int count) {
+        return region(buffer, offset, count * Integer.BYTES).asIntBuffer();
+    }
+
+    // Check that the tables of a loaded file only refer to streets, intersections and turns that exist
+    private static boolean consistent(int streets, int nodes, IntBuffer startNode, IntBuffer endNode, IntBuffer firstOut,
+                                      IntBuffer outState, IntBuffer exitIndex, IntBuffer turnOffset, ByteBuffer turnTable) {
+        for (int i = 0; i < streets; i++) {
+            if (startNode.get(i) < 0 || startNode.get(i) >= nodes || endNode.get(i) < 0 || endNode.get(i) >= nodes) return false;
+        }
+        if (firstOut.get(0) != 0 || firstOut.get(nodes) != 2 * streets || turnOffset.get(0) != 0
+                || turnOffset.get(nodes) != turnTable.limit()) return false;
+        for (int n = 0; n < nodes; n++) {
+            int exits = firstOut.get(n + 1) - firstOut.get(n);
+            if (exits < 0 || turnOffset.get(n + 1) - turnOffset.get(n) != exits * exits) return false;
+            for (int slot = firstOut.get(n); slot < firstOut.get(n + 1); slot++) {
+                int state = outState.get(slot);
+                if (state < 0 || state >= 2 * streets || exitIndex.get(state) != slot - firstOut.get(n)) return false;
+                if ((reversed(state) ? endNode.get(street(state)) : startNode.get(street(state))) != n) return false;
+            }
+        }
+        for (int i = 0; i < turnTable.limit(); i++) {
+            byte turn = turnTable.get(i);
+            if (turn < NO_TURN || turn >= TURNS.length) return false;
+        }
+        return true;
+    }
+
+    // Check that the id offsets stay within the id bytes and that the hash table, if any, names every street once
+    private static boolean consistentIds(int streets, int idBytes, IntBuffer idOffset, IntBuffer idHash) {
+        if (idOffset.get(0) != 0 || idOffset.get(streets) != idBytes) return false;
+        for (int i = 0; i < streets; i++) {
+            if (idOffset.get(i) > idOffset.get(i + 1)) return false;
+        }
+        if (idHash == null) return true;
+        int used = 0;
+        for (int slot = 0; slot < idHash.limit(); slot++) {
+            int street = idHash.get(slot);
+            if (street < -1 || street >= streets) return false;
+            if (street >= 0) used++;
+        }
+        // Fewer streets than slots, so a probe always ends at a free slot
+        return used == streets;
+    }
+
+    // The landmark tables that were saved with this snapshot, or null
+    Landmarks storedLandmarks() {
+        return storedLandmarks;
+    }
+
+    // Slots in the id hash table for the given number of streets: a power of two at least twice as large
+    private static int hashSize(int streets) {
+        return Integer.highestOneBit(Math.max(1, streets) * 2 - 1) << 1;
+    }
+
+    private static int hashSlot(String streetId, int mask) {
+        int hash = streetId.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int[] hashIds(String[] ids) {
+        int[] table = new int[hashSize(ids.length)];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+        for (int i = 0; i < ids.length; i++) {
+            int slot = hashSlot(ids[i], mask);
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i;
+        }
+        return table;
+    }
+
+    private static String decode(ByteBuffer bytes, int from, int to) {
+        byte[] id = new byte[to - from];
+        ByteBuffer view = bytes.duplicate();
+        view.position(from);
+        view.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    // Bytes taken by a map file of the given version holding tables of the given sizes
+    private static long fileSize(int version, int streets, int nodes, int turns, int idBytes) {
+        long ints = 2L * streets + 2L * nodes + (nodes + 1L) + 4L * streets + (nodes + 1L) + (streets + 1L);
+        if (version >= 3) ints += hashSize(streets);
+        return HEADER_BYTES + (long) streets * Double.BYTES + ints * Integer.BYTES + turns + idBytes;
+    }
+
+    // Pack the two int coordinates of an intersection into one key
+    static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    // Spread a packed key over all 64 bits, so that neighbouring and mirrored coordinates hash far apart
+    static long spread(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Number of streets in the snapshot.
+     */
+    public int streetCount() {
+        return streetCount;
+    }
+
+    /**
+     * Number of distinct intersections (street endpoints) in the snapshot.
+     */
+    public int intersectionCount() {
+        return nodeX != null ? nodeX.length : nodeXView.limit();
+    }
+
+    int stateCount() {
+        return 2 * streetCount;
+    }
+
+    int getDegree() {
+        return degree;
+    }
+
+    // The id of a street; a loaded snapshot decodes it from the file on every call
+    String streetId(int street) {
+        if (streetIds != null) return streetIds[street];
+        return decode(idBytes, idOffset.get(street), idOffset.get(street + 1));
+    }
+
+    // Returns the int id of a street, or -1 if the street is not in the snapshot
+    int streetIndex(String streetId) {
+        if (streetId == null) return -1;
+        int mask = idHash.limit() - 1;
+        byte[] encoded = null;
+        for (int slot = hashSlot(streetId, mask); ; slot = (slot + 1) & mask) {
+            int street = idHash.get(slot);
+            if (street < 0) return -1;
+            if (streetIds != null) {
+                if (streetIds[street].equals(streetId)) return street;
+                continue;
+            }
+            // Compare the UTF-8 bytes in place rather than decoding every candidate
+            if (encoded == null) encoded = streetId.getBytes(StandardCharsets.UTF_8);
+            int from = idOffset.get(street);
+            if (idOffset.get(street + 1) - from != encoded.length) continue;
+            int k = 0;
+            while (k < encoded.length && idBytes.get(from + k) == encoded[k]) {
+                k++;
+            }
+            if (k == encoded.length) return street;
+        }
+    }
+
+    // Returns the state for driving along a location's street in the direction that keeps the location's side
+    int state(Location location) {
+        int street = streetIndex(location.getStreetId());
+        if (street < 0 || location.getStreetSide() == null) return -1;
+        return location.getStreetSide() == StreetSide.Right ? 2 * street : 2 * street + 1;
+    }
+
+    static int street(int state) {
+        return state >> 1;
+    }
+
+    static boolean reversed(int state) {
+        return (state & 1) != 0;
+    }
+
+    static StreetSide side(int state) {
+        return reversed(state) ? StreetSide.Left : StreetSide.Right;
+    }
+
+    // Every table is read through one of these, from the array of a compiled snapshot or the view of a loaded one
+    double length(int street) {
+        return length != null ? length[street] : lengthView.get(street);
+    }
+
+    private int startNode(int street) {
+        return startNode != null ? startNode[street] : startNodeView.get(street);
+    }
+
+    private int endNode(int street) {
+        return endNode != null ? endNode[street] : endNodeView.get(street);
+    }
+
+    // The intersection a state drives away from
+    int tailNode(int state) {
+        return reversed(state) ? endNode(street(state)) : startNode(street(state));
+    }
+
+    // The intersection a state drives towards
+    int headNode(int state) {
+        return reversed(state) ? startNode(street(state)) : endNode(street(state));
+    }
+
+    // Returns the int id of the intersection at the given coordinates, or -1 if no street ends there
+    int node(int x, int y) {
+        LongIntMap index = nodeIndex;
+        if (index == null) index = indexNodes();
+        return index.get(key(x, y));
+    }
+
+    // Number the intersections of a loaded snapshot by their coordinates, once
+    private synchronized LongIntMap indexNodes() {
+        if (nodeIndex == null) {
+            LongIntMap index = new LongIntMap(intersectionCount());
+            for (int n = 0; n < intersectionCount(); n++) {
+                index.putIfAbsent(key(nodeX(n), nodeY(n)), n);
+            }
+            nodeIndex = index;
+        }
+        return nodeIndex;
+    }
+
+    // The slot of a state in the row of the intersection it leaves
+    int exitSlot(int state) {
+        return firstOut(tailNode(state)) + exitIndex(state);
+    }
+
+    // Where a state sits in the row of the intersection it leaves
+    private int exitIndex(int state) {
+        return exitIndex != null ? exitIndex[state] : exitIndexView.get(state);
+    }
+
+    int firstOut(int node) {
+        return firstOut != null ? firstOut[node] : firstOutView.get(node);
+    }
+
+    int endOut(int node) {
+        return firstOut(node + 1);
+    }
+
+    int outState(int slot) {
+        return outState != null ? outState[slot] : outStateView.get(slot);
+    }
+
+    int nodeX(int node) {
+        return nodeX != null ? nodeX[node] : nodeXView.get(node);
+    }
+
+    int nodeY(int node) {
+        return nodeY != null ? nodeY[node] : nodeYView.get(node);
+    }
+
+    private int turnOffset(int node) {
+        return turnOffset != null ? turnOffset[node] : turnOffsetView.get(node);
+    }
+
+    private byte turnCode(int index) {
+        return turnTable != null ? turnTable[index] : turnTableView.get(index);
+    }
+
+    /**
+     * Look up the turn made when leaving state "from" at its head intersection by the exit at the given slot
+     * of that intersection's row.
+     * @return -- one of Left, Right, Straight, or UTurn; null if either street has no length
+     */
+    TurnDirection turnAt(int from, int slot) {
+        int node = headNode(from);
+        int first = firstOut(node);
+        int exits = firstOut(node + 1) - first;
+        byte turn = turnCode(turnOffset(node) + exitIndex(from ^ 1) * exits + (slot - first));
+        return turn == NO_TURN ? null : TURNS[turn];
+    }
+
+    /**
+     * Classify the turn made when leaving state "from" at its head intersection onto state "to".  Streets that
+     * meet at the intersection are read from the turn table; any other pair is classified from the coordinates.
+     */
+    TurnDirection turn(int from, int to) {
+        int at = headNode(from);
+        if (tailNode(to) == at) {
+            return turnAt(from, firstOut(at) + exitIndex(to));
+        }
+        int tail = tailNode(from);
+        int next = headNode(to);
+        return Point.turnType(nodeX(tail), nodeY(tail), nodeX(at), nodeY(at), nodeX(next), nodeY(next), tolerance);
+    }
+}
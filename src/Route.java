@@ -1,16 +1,28 @@
 import java.util.*;
 
 
+/**
+ * A route is a sequence of legs, numbered from 1.  The legs are kept in a growable array together with the
+ * running total of the street lengths, so that appending or removing the last leg and asking for the length
+ * are all O(1).  A prefix of a route can share the arrays of the route it came from; whichever of the two is
+ * changed first copies the arrays before writing.
+ */
 public class Route {
     MapPlanner mapPlanner;
-    Map<Integer,Leg> legs;
+    // legs[i] is leg i+1; streetLengths[i] is the sum of the street lengths of legs 1..i
+    private Leg[] legs;
+    private double[] streetLengths;
+    private int size;
+    private boolean shared;
+
     Route(){
-        legs = new HashMap<Integer, Leg>();
+        legs = new Leg[8];
+        streetLengths = new double[9];
     }
 
     Route(MapPlanner mapPlanner){
+        this();
         this.mapPlanner = mapPlanner;
-        legs = new HashMap<Integer, Leg>();
     }
 
     /**
@@ -25,19 +37,20 @@ public class Route {
 
         Street nextStreet = mapPlanner.getStreet(streetTurnedOnto);
 
-        if (legs.isEmpty()) {
+        if (size == 0) {
             // If this is the first leg, add it directly
-            legs.put(1, new Leg(turn, streetTurnedOnto, nextStreet.getStart(), nextStreet.getEnd()));
+            addLeg(new Leg(turn, streetTurnedOnto, nextStreet.getStart(), nextStreet.getEnd()), nextStreet.getLength());
             return true;
         } else {
+            Leg lastLeg = legs[size - 1];
             // Check if the turn is valid for the end of the street
-            if (legs.get(legs()).getStartPoint().turnType(legs.get(legs()).getEndPoint(), nextStreet.getEnd(), this.mapPlanner.getDegree()) == turn) {
-                legs.put(legs() + 1, new Leg(turn, streetTurnedOnto, nextStreet.getStart(), nextStreet.getEnd()));
+            if (mapPlanner.turnType(lastLeg, nextStreet, true) == turn) {
+                addLeg(new Leg(turn, streetTurnedOnto, nextStreet.getStart(), nextStreet.getEnd()), nextStreet.getLength());
                 return true;
             }
             // Check if the turn is valid for the start of the street
-            else if (legs.get(legs()).getStartPoint().turnType(legs.get(legs()).getEndPoint(), nextStreet.getStart(), this.mapPlanner.getDegree()) == turn) {
-                legs.put(legs() + 1, new Leg(turn, streetTurnedOnto, nextStreet.getEnd(), nextStreet.getStart()));
+            else if (mapPlanner.turnType(lastLeg, nextStreet, false) == turn) {
+                addLeg(new Leg(turn, streetTurnedOnto, nextStreet.getEnd(), nextStreet.getStart()), nextStreet.getLength());
                 return true;
             }
         }
@@ -46,22 +59,99 @@ public class Route {
         return false;
     }
 
+    /**
+     * Adds a leg whose direction along the street is already known, as when the planner builds a route
+     * from a search over the compiled map.
+     * @param turn The type of turn to make
+     * @param street The street being turned onto
+     * @param reversed True if the street is driven from its end to its start
+     */
+    void appendLeg(TurnDirection turn, Street street, boolean reversed) {
+        if (reversed) {
+            addLeg(new Leg(turn, street.getId(), street.getEnd(), street.getStart()), street.getLength());
+        } else {
+            addLeg(new Leg(turn, street.getId(), street.getStart(), street.getEnd()), street.getLength());
+        }
+    }
+
+    // Add a leg at the end of the route, growing the arrays when full
+    private void addLeg(Leg leg, double streetLength) {
+        if (shared || size == legs.length) {
+            int capacity = size == legs.length ? 2 * legs.length : legs.length;
+            legs = Arrays.copyOf(legs, capacity);
+            streetLengths = Arrays.copyOf(streetLengths, capacity + 1);
+            shared = false;
+        }
+        legs[size] = leg;
+        streetLengths[size + 1] = streetLengths[size] + streetLength;
+        size++;
+    }
+
+    /**
+     * Removes the last leg of the route
+     * @return True if a leg was removed, false if the route was already empty
+     */
+    public Boolean removeLastLeg() {
+        if (size == 0) return false;
+        if (shared) {
+            legs = Arrays.copyOf(legs, legs.length);
+            streetLengths = Arrays.copyOf(streetLengths, streetLengths.length);
+            shared = false;
+        }
+        legs[--size] = null;
+        return true;
+    }
+
+    /**
+     * Returns a route made of the first legs of this one.  The new route shares this route's arrays until
+     * either of them is changed.
+     * @param legCount The number of legs to keep
+     */
+    Route prefix(int legCount) {
+        Route prefix = new Route(mapPlanner);
+        prefix.legs = legs;
+        prefix.streetLengths = streetLengths;
+        prefix.size = Math.max(0, Math.min(legCount, size));
+        prefix.shared = true;
+        shared = true;
+        return prefix;
+    }
+
+    /**
+     * Returns a route made of legs firstLeg to lastLeg of this one, copied as they are rather than replayed.
+     */
+    Route copyLegs(int firstLeg, int lastLeg) {
+        if (firstLeg == 1) return prefix(lastLeg);
+
+        Route copy = new Route(mapPlanner);
+        for (int i = firstLeg; i <= Math.min(lastLeg, size); i++) {
+            copy.addLeg(legs[i - 1], streetLengths[i] - streetLengths[i - 1]);
+        }
+        return copy;
+    }
+
+    // Returns the leg with the given number, or null if there is no such leg
+    Leg getLeg(int legNumber) {
+        if (legNumber < 1 || legNumber > size) return null;
+        return legs[legNumber - 1];
+    }
+
     public String turnOnto( int legNumber ) {
         // input validations
-        if(legNumber == 0 || legs.isEmpty() || legs.get(legNumber) == null) return null;
-        return legs.get(legNumber).getStreetTurnedOnto();
+        if(legNumber < 1 || legNumber > size) return null;
+        return legs[legNumber - 1].getStreetTurnedOnto();
 
     }
 
     public TurnDirection turnDirection( int legNumber ) {
         // input validations
-        if(legNumber == 0 || legs.isEmpty() || legs.get(legNumber)==null) return null;
-        return legs.get(legNumber).getTurn();
+        if(legNumber < 1 || legNumber > size) return null;
+        return legs[legNumber - 1].getTurn();
     }
 
     public int legs() {
         
-        return this.legs.size();
+        return size;
         
     }
 
@@ -71,32 +161,17 @@ public class Route {
      */
     public Double length() {
         // Return 0 if the route is empty
-        if (legs.isEmpty()) {
+        if (size == 0) {
             return 0.0;
         }
 
-        double totalLength = 0.0;
-        int numLegs = legs.size();
-
-        // Iterate through all legs of the route
-        for (int i = 1; i <= legs(); i++) {
-            Leg leg = legs.get(i);
-            double legLength;
-
-            // Get the length of the street for this leg
-            String streetId = leg.getStreetTurnedOnto();
-            Street street = mapPlanner.getStreet(streetId);
-            legLength = street.getLength();
-
-            // Add half length for first and last legs, full length for others
-            if (i == 1 || i == numLegs) {
-                totalLength += legLength / 2;
-            } else {
-                totalLength += legLength;
-            }
+        // Add half length for first and last legs, full length for others
+        double first = streetLengths[1];
+        if (size == 1) {
+            return first / 2;
         }
-
-        return totalLength;
+        double last = streetLengths[size] - streetLengths[size - 1];
+        return first / 2 + (streetLengths[size - 1] - first) + last / 2;
     }
 
     /**
@@ -105,15 +180,15 @@ public class Route {
      */
     public List<SubRoute> loops() {
         List<SubRoute> loopList = new ArrayList<>();
-        if (legs.size() < 2) {  // A loop needs at least 2 legs
+        if (size < 2) {  // A loop needs at least 2 legs
             return loopList;
         }
 
         Map<Point, Integer> pointToLegMap = new HashMap<>();
 
         // Iterate through all legs of the route
-        for (int currentLeg = 1; currentLeg <= legs.size(); currentLeg++) {
-            Point currentPoint = legs.get(currentLeg).getEndPoint();
+        for (int currentLeg = 1; currentLeg <= size; currentLeg++) {
+            Point currentPoint = legs[currentLeg - 1].getEndPoint();
 
             // Check if we've seen this point before
             if (pointToLegMap.containsKey(currentPoint)) {
@@ -147,20 +222,21 @@ public class Route {
      */
     public Route simplify() {
         Route simplifiedRoute = new Route(this.mapPlanner);
-        if (legs.isEmpty()) {
+        if (size == 0) {
             return simplifiedRoute;
         }
 
         Stack<Leg> straightLegs = new Stack<>();
         String currentStreet = null;
+        double currentStreetLength = 0;
         double accumulatedLength = 0;
 
         // Iterate through all legs of the route
         for (int i = 1; i <= legs(); i++) {
-            Leg currentLeg = legs.get(i);
+            Leg currentLeg = legs[i - 1];
             TurnDirection currentTurn = currentLeg.getTurn();
             String streetTurnedOnto = currentLeg.getStreetTurnedOnto();
-            double legLength = mapPlanner.getStreet(streetTurnedOnto).getLength();
+            double legLength = streetLengths[i] - streetLengths[i - 1];
 
             // Check if the leg is a straight continuation on the same street
             if (currentTurn == TurnDirection.Straight && streetTurnedOnto.equals(currentStreet)) {
@@ -174,15 +250,16 @@ public class Route {
                     Leg combinedLeg = new Leg(TurnDirection.Straight, currentStreet,
                             firstStraight.getStartPoint(), lastStraight.getEndPoint());
                     combinedLeg.setAccumulatedLength(accumulatedLength);
-                    simplifiedRoute.legs.put(simplifiedRoute.legs() + 1, combinedLeg);
+                    simplifiedRoute.addLeg(combinedLeg, currentStreetLength);
 
                     straightLegs.clear();
                     accumulatedLength = 0;
                 }
 
                 // Add the current non-straight leg to the simplified route
-                simplifiedRoute.legs.put(simplifiedRoute.legs() + 1, currentLeg);
+                simplifiedRoute.addLeg(currentLeg, legLength);
                 currentStreet = streetTurnedOnto;
+                currentStreetLength = legLength;
                 accumulatedLength = legLength;
             }
         }
@@ -194,7 +271,7 @@ public class Route {
             Leg combinedLeg = new Leg(TurnDirection.Straight, currentStreet,
                     firstStraight.getStartPoint(), lastStraight.getEndPoint());
             combinedLeg.setAccumulatedLength(accumulatedLength);
-            simplifiedRoute.legs.put(simplifiedRoute.legs() + 1, combinedLeg);
+            simplifiedRoute.addLeg(combinedLeg, currentStreetLength);
         }
 
         return simplifiedRoute;
@@ -0,0 +1,125 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of computed routes, least recently used first out, with counters for tuning its size.
+ *
+ * Routes are kept in compact form, as the int states of the compiled map they were found on, and are rebuilt
+ * into a fresh Route on every hit, since callers may change the Route they are given.  Unreachable targets
+ * are cached too.  Every entry belongs to one version of the map and depot: the first lookup against a newer
+ * version empties the cache, and lookups against an older one miss.
+ */
+public final class RouteCache {
+    // Stands for a target known to be unreachable
+    static final int[] UNREACHABLE = new int[0];
+
+    private final int capacity;
+    private final LinkedHashMap<Key, int[]> routes;
+    private long version = -1;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    RouteCache(int capacity) {
+        this.capacity = capacity;
+        this.routes = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                if (size() <= RouteCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // A route is identified by where it starts, where it ends and the turn costs it was found under
+    private static final class Key {
+        final int start;
+        final int target;
+        final TurnCostModel policy;
+        final int hash;
+
+        Key(int start, int target, TurnCostModel policy) {
+            this.start = start;
+            this.target = target;
+            this.policy = policy;
+            this.hash = (31 * start + target) * 31 + System.identityHashCode(policy);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return start == key.start && target == key.target && policy == key.policy;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Look up a route.
+     * @param version -- the version of the map and depot the route is wanted for
+     * @param start -- the start state
+     * @param target -- the target street
+     * @param policy -- the turn costs; models are told apart by identity
+     * @return -- the states of the route, UNREACHABLE, or null if the route is not cached
+     */
+    synchronized int[] get(long version, int start, int target, TurnCostModel policy) {
+        if (version > this.version) {
+            routes.clear();
+            this.version = version;
+        } else if (version < this.version) {
+            // A query still running on an older snapshot
+            misses++;
+            return null;
+        }
+        int[] states = routes.get(new Key(start, target, policy));
+        if (states == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return states;
+    }
+
+    /**
+     * Store a route found for the given version, or UNREACHABLE.  Routes for an older version than the latest
+     * looked up are not kept.
+     */
+    synchronized void put(long version, int start, int target, TurnCostModel policy, int[] states) {
+        if (version != this.version) return;
+        routes.put(new Key(start, target, policy), states);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    // Lookups answered from the cache
+    public synchronized long hits() {
+        return hits;
+    }
+
+    // Lookups that had to search
+    public synchronized long misses() {
+        return misses;
+    }
+
+    // Routes dropped to make room for newer ones; emptying the cache for a new map version does not count
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    // Share of lookups answered from the cache, or 0 before any lookup
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * The shortest routes without left turns from a depot to every street it can reach, computed in one search.
+ * A tree can also be grown from several named depots at once, in which case every street is reached from
+ * its nearest depot.
+ *
+ * Only the distance and the parent of each (street, direction) state are kept; a Route is built on demand by
+ * following the parent pointers back to the depot.  The tree belongs to the map version it was computed for
+ * and stops being current once a street is added or the depot moves.
+ */
+public class ShortestPathTree {
+    private final MapPlanner mapPlanner;
+    private final RoadGraph map;
+    private final Location depot;
+    private final long version;
+    private final double[] distance;
+    private final int[] parent;
+    private final String[] depotNames;
+    private final int[] origin;
+
+    ShortestPathTree(MapPlanner mapPlanner, RoadGraph map, Location depot, long version, double[] distance, int[] parent) {
+        this(mapPlanner, map, depot, version, distance, parent, null, null);
+    }
+
+    ShortestPathTree(MapPlanner mapPlanner, RoadGraph map, Location depot, long version, double[] distance, int[] parent,
+                     String[] depotNames, int[] origin) {
+        this.mapPlanner = mapPlanner;
+        this.map = map;
+        this.depot = depot;
+        this.version = version;
+        this.distance = distance;
+        this.parent = parent;
+        this.depotNames = depotNames;
+        this.origin = origin;
+    }
+
+    /**
+     * Return the depot location the tree was grown from
+     * @return -- the depot of this tree, or null if the tree was grown from several depots
+     */
+    public Location getDepot() {
+        return depot;
+    }
+
+    /**
+     * Report whether the tree still describes the planner's map and depot.
+     * @return -- false once a street has been added or the depot changed since the tree was computed, or, for a
+     * tree grown from the named depots, once another depot has been added
+     */
+    public boolean isCurrent() {
+        return mapPlanner.getVersion() == version && (depot != null || depotNames.length == mapPlanner.depotCount());
+    }
+
+    // The map version the tree was computed for
+    long version() {
+        return version;
+    }
+
+    // The number of depot names the tree carries, or 0 if it was grown from the unnamed depot
+    int depotCount() {
+        return depotNames == null ? 0 : depotNames.length;
+    }
+
+    /**
+     * Build the route from the depot to the given destination.  As with MapPlanner.routeNoLeftTurn, the route
+     * ends on the destination street in whichever direction is closer.
+     * @param targetLocation The destination for the route
+     * @return The route to the destination, or null if no route exists
+     */
+    public Route route(Location targetLocation) {
+        int arrival = arrival(targetLocation);
+        return arrival < 0 ? null : mapPlanner.buildRoute(map, TurnSearch.path(parent, arrival));
+    }
+
+    /**
+     * Report the length of the shortest route from the depot to the given destination.
+     * @param targetLocation The destination
+     * @return the length of the route, or null if no route exists
+     */
+    public Double distance(Location targetLocation) {
+        int arrival = arrival(targetLocation);
+        return arrival < 0 ? null : distance[arrival];
+    }
+
+    /**
+     * Name the depot whose route to the given destination is shortest.
+     * @param targetLocation The destination
+     * @return the name of the nearest depot, or null if no depot can reach the destination or the tree was not
+     * grown from named depots
+     */
+    public String nearestDepot(Location targetLocation) {
+        int arrival = arrival(targetLocation);
+        return arrival < 0 || depotNames == null ? null : depotNames[origin[arrival]];
+    }
+
+    /**
+     * Count the streets that can be reached from the depot, including the depot street itself.
+     */
+    public int reachableStreets() {
+        int reached = 0;
+        for (int street = 0; street < map.streetCount(); street++) {
+            if (distance[2 * street] != Double.POSITIVE_INFINITY || distance[2 * street + 1] != Double.POSITIVE_INFINITY) {
+                reached++;
+            }
+        }
+        return reached;
+    }
+
+    // The closer reached state on the target street, or -1 if the street is unknown or unreachable
+    int arrival(Location targetLocation) {
+        if (targetLocation == null) return -1;
+        int street = map.streetIndex(targetLocation.getStreetId());
+        if (street < 0) return -1;
+
+        int forward = 2 * street;
+        int backward = forward + 1;
+        int closer = distance[backward] < distance[forward] ? backward : forward;
+        return distance[closer] == Double.POSITIVE_INFINITY ? -1 : closer;
+    }
+}
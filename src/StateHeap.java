@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * An indexed binary min-heap of search states keyed by distance.  Each state appears at most once; pushing a
+ * state that is already queued with a smaller key moves it up in place (decrease-key), so the heap never holds
+ * more entries than there are states.
+ */
+final class StateHeap {
+    private final int[] heap;
+    private final int[] position;
+    private final double[] key;
+    private int size;
+
+    /**
+     * Create an empty heap for states numbered 0 .. capacity-1.
+     * @param capacity -- the number of states in the search
+     */
+    StateHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        key = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int state) {
+        return position[state] >= 0;
+    }
+
+    // The smallest key in the heap; only valid when the heap is not empty
+    double peekKey() {
+        return key[heap[0]];
+    }
+
+    /**
+     * Queue a state, or lower its key if it is already queued.  A larger key than the queued one is ignored.
+     */
+    void push(int state, double stateKey) {
+        int at = position[state];
+        if (at < 0) {
+            at = size++;
+            heap[at] = state;
+            position[state] = at;
+        } else if (stateKey >= key[state]) {
+            return;
+        }
+        key[state] = stateKey;
+        siftUp(at);
+    }
+
+    /**
+     * Remove and return the state with the smallest key.
+     */
+    int pop() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int at) {
+        int state = heap[at];
+        double stateKey = key[state];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (key[heap[parent]] <= stateKey) break;
+            heap[at] = heap[parent];
+            position[heap[at]] = at;
+            at = parent;
+        }
+        heap[at] = state;
+        position[state] = at;
+    }
+
+    private void siftDown(int at) {
+        int state = heap[at];
+        double stateKey = key[state];
+        int half = size >>> 1;
+        while (at < half) {
+            int child = 2 * at + 1;
+            if (child + 1 < size && key[heap[child + 1]] < key[heap[child]]) child++;
+            if (stateKey <= key[heap[child]]) break;
+            heap[at] = heap[child];
+            position[heap[at]] = at;
+            at = child;
+        }
+        heap[at] = state;
+        position[state] = at;
+    }
+}
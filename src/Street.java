@@ -1,13 +1,16 @@
 public class Street {
-    private String id;
-    private Point start;
-    private Point end;
+    private final String id;
+    private final Point start;
+    private final Point end;
+    // Computed once, as every route and map compile asks for it
+    private final double length;
 
     // Constructor: Initializes a new Street with given id and endpoints
     public Street(String id, Point start, Point end) {
         this.id = id;
         this.start = start;
         this.end = end;
+        this.length = start.distanceTo(end);
     }
 
     // Returns the unique identifier of this street
@@ -25,9 +28,23 @@ public class Street {
         return end;
     }
 
-    // Calculates and returns the length of this street
+    // Returns the length of this street
     public double getLength() {
-        return start.distanceTo(end);
+        return length;
+    }
+
+    /**
+     * Classify the turn from the end of this street onto another, each driven towards its end when the flag is
+     * true and towards its start otherwise.  Uses the cached lengths, so no square root is taken.
+     * @return -- one of Left, Right, Straight, or UTurn; null if either street has no length
+     */
+    TurnDirection turnOnto(boolean forward, Street onto, boolean ontoForward, double tolerance) {
+        int inX = end.getX() - start.getX();
+        int inY = end.getY() - start.getY();
+        int outX = onto.end.getX() - onto.start.getX();
+        int outY = onto.end.getY() - onto.start.getY();
+        return Point.turnType(forward ? inX : -inX, forward ? inY : -inY, length,
+                ontoForward ? outX : -outX, ontoForward ? outY : -outY, onto.length, tolerance);
     }
 
     // Returns the opposite end point given one end of the street
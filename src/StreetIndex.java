@@ -0,0 +1,159 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A uniform grid of square buckets over the streets of a map, used to snap arbitrary coordinates to the
+ * nearest street.  Each street is listed in every bucket its segment passes through, found by walking the
+ * grid from one end of the street to the other, so a long diagonal street costs buckets in proportion to its
+ * length rather than to the area of its bounding box.
+ *
+ * Streets are added one at a time as they join the map.  Buckets are concurrent so that snaps can run while
+ * another thread adds streets; a snap sees each street either fully indexed or not at all.
+ */
+final class StreetIndex {
+    private final int cellSize;
+    // Keyed by the spread bucket coordinates, as a plain packed key hashes neighbouring buckets alike
+    private final Map<Long, List<Street>> cells = new ConcurrentHashMap<>();
+
+    // Range of bucket coordinates holding any street, so a search knows when to give up
+    private volatile int minCellX = Integer.MAX_VALUE, minCellY = Integer.MAX_VALUE;
+    private volatile int maxCellX = Integer.MIN_VALUE, maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * Create an empty index.
+     * @param cellSize -- the side of a bucket in metres
+     */
+    StreetIndex(int cellSize) {
+        if (cellSize < 1) throw new IllegalArgumentException("Invalid Parameter Passed");
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Add a street to every bucket its segment passes through.  Callers adding from several threads must
+     * serialise their calls.
+     */
+    void add(Street street) {
+        int x1 = street.getStart().getX(), y1 = street.getStart().getY();
+        int x2 = street.getEnd().getX(), y2 = street.getEnd().getY();
+        int cx = cell(x1), cy = cell(y1);
+        int endX = cell(x2), endY = cell(y2);
+        long dx = Math.abs((long) x2 - x1), dy = Math.abs((long) y2 - y1);
+        int stepX = x2 > x1 ? 1 : -1, stepY = y2 > y1 ? 1 : -1;
+
+        put(cx, cy, street);
+        while (cx != endX || cy != endY) {
+            if (cx == endX) {
+                cy += stepY;
+            } else if (cy == endY) {
+                cx += stepX;
+            } else {
+                // Distance from the start to the next bucket edge along each axis; the street crosses the x edge
+                // first when toX / dx < toY / dy.  Both products stay below 2^64, so compare them unsigned.
+                long toX = stepX > 0 ? (long) (cx + 1) * cellSize - x1 : x1 - (long) cx * cellSize;
+                long toY = stepY > 0 ? (long) (cy + 1) * cellSize - y1 : y1 - (long) cy * cellSize;
+                int order = Long.compareUnsigned(toX * dy, toY * dx);
+                if (order == 0) {
+                    // Through a corner: list the buckets on both sides of it too, as the corner belongs to one
+                    put(cx + stepX, cy, street);
+                    put(cx, cy + stepY, street);
+                }
+                if (order <= 0) cx += stepX;
+                if (order >= 0) cy += stepY;
+            }
+            put(cx, cy, street);
+        }
+        minCellX = Math.min(minCellX, Math.min(cell(x1), endX));
+        minCellY = Math.min(minCellY, Math.min(cell(y1), endY));
+        maxCellX = Math.max(maxCellX, Math.max(cell(x1), endX));
+        maxCellY = Math.max(maxCellY, Math.max(cell(y1), endY));
+    }
+
+    private void put(int cx, int cy, Street street) {
+        cells.computeIfAbsent(bucket(cx, cy), k -> new CopyOnWriteArrayList<>()).add(street);
+    }
+
+    /**
+     * Find the street nearest to a point and the side of the street the point lies on, taking the street's
+     * start to end as its orientation.  A point exactly on the street counts as the Right side.
+     * @param point -- the point to snap
+     * @return -- the location on the nearest street, or null if the index is empty
+     */
+    Location snap(Point point) {
+        // Read the box once; another thread may be growing it
+        int boxMinX = minCellX, boxMinY = minCellY, boxMaxX = maxCellX, boxMaxY = maxCellY;
+        if (boxMaxX == Integer.MIN_VALUE) return null;
+
+        int px = point.getX();
+        int py = point.getY();
+        int cx = cell(px);
+        int cy = cell(py);
+        // Only buckets inside the occupied box can hold a street, so rings are clipped to it
+        int lowX = boxMinX - cx, highX = boxMaxX - cx;
+        int lowY = boxMinY - cy, highY = boxMaxY - cy;
+        int firstRing = Math.max(0, Math.max(Math.max(lowX, -highX), Math.max(lowY, -highY)));
+        int lastRing = Math.max(Math.max(-lowX, highX), Math.max(-lowY, highY));
+
+        Street nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (int ring = firstRing; ring <= lastRing; ring++) {
+            // Visit the buckets of the box on the square ring at this Chebyshev distance from the point's bucket
+            int fromX = Math.max(-ring, lowX), toX = Math.min(ring, highX);
+            int fromY = Math.max(-ring, lowY), toY = Math.min(ring, highY);
+            for (int dx = fromX; dx <= toX; dx++) {
+                // Columns on the edge of the ring take every row of the box, the others only the top and bottom
+                boolean edge = dx == -ring || dx == ring;
+                int step = edge ? 1 : 2 * ring;
+                for (int dy = edge ? fromY : -ring; dy <= (edge ? toY : ring); dy += Math.max(step, 1)) {
+                    if (dy < fromY || dy > toY) continue;
+                    List<Street> bucket = cells.get(bucket(cx + dx, cy + dy));
+                    if (bucket == null) continue;
+                    for (Street street : bucket) {
+                        double distance = distanceSquared(px, py, street);
+                        if (distance < nearestDistance) {
+                            nearestDistance = distance;
+                            nearest = street;
+                        }
+                    }
+                }
+            }
+            // Anything in a further ring is at least this far from the point
+            double reach = (double) ring * cellSize;
+            if (nearest != null && nearestDistance <= reach * reach) break;
+        }
+
+        return new Location(nearest.getId(), side(px, py, nearest));
+    }
+
+    // The side of the street, oriented from start to end, on which the point lies
+    static StreetSide side(int px, int py, Street street) {
+        Point start = street.getStart();
+        Point end = street.getEnd();
+        double cross = (double) (end.getX() - start.getX()) * (py - start.getY())
+                - (double) (end.getY() - start.getY()) * (px - start.getX());
+        return cross > 0 ? StreetSide.Left : StreetSide.Right;
+    }
+
+    // Squared distance from a point to the closest point of a street
+    static double distanceSquared(int px, int py, Street street) {
+        double sx = street.getStart().getX();
+        double sy = street.getStart().getY();
+        double dx = street.getEnd().getX() - sx;
+        double dy = street.getEnd().getY() - sy;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - sx) * dx + (py - sy) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ox = sx + t * dx - px;
+        double oy = sy + t * dy - py;
+        return ox * ox + oy * oy;
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static Long bucket(int cx, int cy) {
+        return RoadGraph.spread(RoadGraph.key(cx, cy));
+    }
+}
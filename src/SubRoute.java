@@ -47,13 +47,11 @@ public class SubRoute {
     public Route extractRoute() {
         Route newRoute = new Route(mapPlanner);
         if(startLeg > endLeg) return  newRoute;
-        //this is done to add the first leg directly onto the newRoute
-        newRoute.appendTurn(this.walk.turnDirection(startLeg), walk.turnOnto(startLeg));
-        // and then start iteratin to add the rest of them
-        for(int i = startLeg + 1;i<=endLeg;i++){
-            newRoute.appendTurn(this.walk.turnDirection(i), walk.turnOnto(i));
-        }
-        return newRoute;
+        // the legs are already validated in the walk, so they are copied rather than replayed turn by turn;
+        // a subroute from the first leg is just a prefix view of the walk
+        Route extracted = this.walk.copyLegs(startLeg, endLeg);
+        extracted.mapPlanner = mapPlanner;
+        return extracted;
     }
 
     public Route getWalk() {
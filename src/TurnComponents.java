@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+ * The strongly connected components of the (street, direction) states of a RoadGraph under the no-left-turn
+ * rule: two states share a component when each can be driven to from the other without a left turn or U-turn.
+ *
+ * Components are found with Tarjan's algorithm, which numbers them in reverse topological order: a route can
+ * only lead from a component to one with a lower or equal number.  States are also grouped into weakly
+ * connected components, ignoring the direction of turns.  Together these reject most unreachable targets in
+ * constant time, without a search that would otherwise explore everything the start can reach.  The test is
+ * one-sided: passing it does not prove that a route exists.
+ */
+final class TurnComponents {
+    private final RoadGraph map;
+    // Tarjan component of each state, in reverse topological order
+    private final int[] component;
+    // Weakly connected component of each state, named by one of its states
+    private final int[] weak;
+    private final int count;
+
+    private TurnComponents(RoadGraph map, int[] component, int[] weak, int count) {
+        this.map = map;
+        this.component = component;
+        this.weak = weak;
+        this.count = count;
+    }
+
+    /**
+     * Find the components of a map.  Takes time in proportion to the number of turns.
+     */
+    static TurnComponents of(RoadGraph map) {
+        int states = map.stateCount();
+        int[] index = new int[states];
+        int[] low = new int[states];
+        int[] component = new int[states];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+
+        // Tarjan's algorithm with explicit stacks, as routes can be far deeper than the call stack allows
+        int[] stack = new int[states];
+        int[] callState = new int[states];
+        int[] callSlot = new int[states];
+        int next = 0;
+        int count = 0;
+        for (int root = 0; root < states; root++) {
+            if (index[root] >= 0) continue;
+            int top = 0;
+            int depth = 0;
+            index[root] = low[root] = next++;
+            stack[top++] = root;
+            callState[depth] = root;
+            callSlot[depth++] = map.firstOut(map.headNode(root));
+            while (depth > 0) {
+                int state = callState[depth - 1];
+                int slot = callSlot[depth - 1];
+                if (slot < map.endOut(map.headNode(state))) {
+                    callSlot[depth - 1]++;
+                    int successor = map.outState(slot);
+                    if (!allowed(map, state, slot, successor)) continue;
+                    if (index[successor] < 0) {
+                        index[successor] = low[successor] = next++;
+                        stack[top++] = successor;
+                        callState[depth] = successor;
+                        callSlot[depth++] = map.firstOut(map.headNode(successor));
+                    } else if (component[successor] < 0) {
+                        // Still on the stack, so part of the component being built
+                        low[state] = Math.min(low[state], index[successor]);
+                    }
+                    continue;
+                }
+
+                // Every turn from this state is explored; it either roots a component or passes its low link up
+                if (low[state] == index[state]) {
+                    int member;
+                    do {
+                        member = stack[--top];
+                        component[member] = count;
+                    } while (member != state);
+                    count++;
+                }
+                depth--;
+                if (depth > 0) {
+                    int caller = callState[depth - 1];
+                    low[caller] = Math.min(low[caller], low[state]);
+                }
+            }
+        }
+
+        // Weak components by union-find over the same turns
+        int[] weak = new int[states];
+        for (int state = 0; state < states; state++) {
+            weak[state] = state;
+        }
+        for (int state = 0; state < states; state++) {
+            int head = map.headNode(state);
+            for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+                int successor = map.outState(slot);
+                if (allowed(map, state, slot, successor)) {
+                    int a = find(weak, state);
+                    int b = find(weak, successor);
+                    if (a != b) weak[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        for (int state = 0; state < states; state++) {
+            weak[state] = find(weak, state);
+        }
+        return new TurnComponents(map, component, weak, count);
+    }
+
+    // Whether the turn from a state through an exit slot is one a no-left-turn route may take
+    private static boolean allowed(RoadGraph map, int state, int slot, int successor) {
+        if (RoadGraph.street(successor) == RoadGraph.street(state)) return false;
+        TurnDirection turn = map.turnAt(state, slot);
+        return turn != null && TurnCostModel.NO_LEFT_TURN.cost(turn) != Double.POSITIVE_INFINITY;
+    }
+
+    private static int find(int[] parent, int state) {
+        while (parent[state] != state) {
+            parent[state] = parent[parent[state]];
+            state = parent[state];
+        }
+        return state;
+    }
+
+    RoadGraph map() {
+        return map;
+    }
+
+    // Number of strongly connected components
+    int count() {
+        return count;
+    }
+
+    // Strongly connected component of a state; a route only leads to components with lower or equal numbers
+    int component(int state) {
+        return component[state];
+    }
+
+    /**
+     * Whether a state might reach another without a left turn.  False is certain; true only means a search is
+     * needed to tell.
+     */
+    boolean mayReach(int from, int to) {
+        return weak[from] == weak[to] && component[to] <= component[from];
+    }
+
+    /**
+     * Whether a state might reach either direction of a street without a left turn.
+     */
+    boolean mayReachStreet(int from, int street) {
+        return mayReach(from, 2 * street) || mayReach(from, 2 * street + 1);
+    }
+}
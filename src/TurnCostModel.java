@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The extra cost of each kind of turn, in the same units as street lengths, so a route search minimises the
+ * length driven plus the cost of every turn taken.  A cost of positive infinity bans the turn outright.
+ *
+ * A model may also give particular intersections costs of their own, such as a left turn that is cheap at a
+ * junction with a turning lane or banned at one without.  Models are immutable; withIntersection returns a new
+ * one.  Searches look the costs up in flat tables resolved once per compiled map, so the model costs nothing
+ * per turn beyond an array read.
+ */
+public final class TurnCostModel {
+    private static final int TURNS = TurnDirection.values().length;
+
+    /** Every turn is free except a U-turn, which is banned. */
+    public static final TurnCostModel NO_U_TURN = new TurnCostModel(0.0, 0.0, 0.0, Double.POSITIVE_INFINITY);
+    /** Left turns and U-turns are banned, right turns and going straight are free. */
+    public static final TurnCostModel NO_LEFT_TURN = new TurnCostModel(Double.POSITIVE_INFINITY, 0.0, 0.0, Double.POSITIVE_INFINITY);
+
+    // Costs indexed by TurnDirection ordinal
+    private final double[] costs;
+    // Intersections with costs of their own, each a full row of costs
+    private final Map<Point, double[]> overrides;
+
+    // Override rows resolved for the last map asked about: the row offset of each intersection, or -1
+    private volatile Resolved resolved;
+
+    private static final class Resolved {
+        final RoadGraph map;
+        final int[] rows;
+        final double[] costs;
+
+        Resolved(RoadGraph map, int[] rows, double[] costs) {
+            this.map = map;
+            this.rows = rows;
+            this.costs = costs;
+        }
+    }
+
+    /**
+     * Create a model with the given cost for each kind of turn at every intersection.
+     * @param left -- cost of a left turn; positive infinity to ban it
+     * @param right -- cost of a right turn
+     * @param straight -- cost of going straight on
+     * @param uTurn -- cost of turning back the way one came along another street
+     */
+    public TurnCostModel(double left, double right, double straight, double uTurn) {
+        this(costs(left, right, straight, uTurn), new LinkedHashMap<>());
+    }
+
+    private TurnCostModel(double[] costs, Map<Point, double[]> overrides) {
+        this.costs = costs;
+        this.overrides = overrides;
+    }
+
+    private static double[] costs(double left, double right, double straight, double uTurn) {
+        double[] costs = new double[TURNS];
+        costs[TurnDirection.Left.ordinal()] = check(left);
+        costs[TurnDirection.Right.ordinal()] = check(right);
+        costs[TurnDirection.Straight.ordinal()] = check(straight);
+        costs[TurnDirection.UTurn.ordinal()] = check(uTurn);
+        return costs;
+    }
+
+    // Costs must not be negative, or the shortest route would be undefined
+    private static double check(double cost) {
+        if (!(cost >= 0.0)) throw new IllegalArgumentException("Invalid Parameter Passed");
+        return cost;
+    }
+
+    /**
+     * Return a copy of this model in which one kind of turn at one intersection has its own cost.  The other
+     * turns at that intersection keep the costs they had.
+     * @param at -- the intersection
+     * @param turn -- the kind of turn
+     * @param cost -- its cost there; positive infinity to ban it
+     */
+    public TurnCostModel withIntersection(Point at, TurnDirection turn, double cost) {
+        if (at == null || turn == null) throw new IllegalArgumentException("Invalid Parameter Passed");
+        Map<Point, double[]> copy = new LinkedHashMap<>(overrides);
+        double[] row = copy.containsKey(at) ? copy.get(at).clone() : costs.clone();
+        row[turn.ordinal()] = check(cost);
+        copy.put(at, row);
+        return new TurnCostModel(costs, copy);
+    }
+
+    /**
+     * The cost of a kind of turn at intersections without costs of their own.
+     */
+    public double cost(TurnDirection turn) {
+        return costs[turn.ordinal()];
+    }
+
+    /**
+     * The cost of a kind of turn at the given intersection.
+     */
+    public double cost(Point at, TurnDirection turn) {
+        double[] row = overrides.get(at);
+        return row != null ? row[turn.ordinal()] : costs[turn.ordinal()];
+    }
+
+    // Costs indexed by TurnDirection ordinal.  Not to be modified.
+    double[] costs() {
+        return costs;
+    }
+
+    /**
+     * Resolve the intersection costs for a compiled map.  The cost of turn t at intersection n is
+     * overrideCosts(map)[rows[n] + t.ordinal()] when rows[n] is not negative, and costs()[t.ordinal()] otherwise.
+     * @return -- the row offset of every intersection, or null if the model has no intersection costs
+     */
+    int[] overrideRows(RoadGraph map) {
+        return overrides.isEmpty() ? null : resolve(map).rows;
+    }
+
+    double[] overrideCosts(RoadGraph map) {
+        return overrides.isEmpty() ? null : resolve(map).costs;
+    }
+
+    private Resolved resolve(RoadGraph map) {
+        Resolved current = resolved;
+        if (current != null && current.map == map) return current;
+
+        int[] rows = new int[map.intersectionCount()];
+        Arrays.fill(rows, -1);
+        double[] table = new double[overrides.size() * TURNS];
+        int row = 0;
+        for (Map.Entry<Point, double[]> entry : overrides.entrySet()) {
+            System.arraycopy(entry.getValue(), 0, table, row, TURNS);
+            int node = map.node(entry.getKey().getX(), entry.getKey().getY());
+            // Intersections not on this map are ignored
+            if (node >= 0) rows[node] = row;
+            row += TURNS;
+        }
+        current = new Resolved(map, rows, table);
+        resolved = current;
+        return current;
+    }
+}
@@ -0,0 +1,564 @@
+import java.util.Arrays;
+
+/**
+ * Label-setting shortest-path search (Dijkstra) over the directed street states of a RoadGraph.
+ *
+ * Moving from one state to the next costs half of each street plus the cost of the turn between them, so that
+ * without turn costs the distance to a state is the Route.length() of the route ending on it.  Turn costs come
+ * from a TurnCostModel, where a cost of positive infinity bans the turn.  Turning back onto the street being
+ * driven is never allowed.
+ *
+ * A search can be run again on the same map; only the states touched by the previous run are reset, so a short
+ * search on a large map costs time in proportion to the states it reaches rather than to the map.
+ */
+final class TurnSearch {
+    private final RoadGraph map;
+    // The turn costs in use, resolved for the map: see TurnCostModel.overrideRows
+    private TurnCostModel model;
+    private double[] turnCost;
+    private int[] overrideRow;
+    private double[] overrideCost;
+    private final double[] distance;
+    private final int[] parent;
+    private final int[] origin;
+    private final StateHeap heap;
+    private final int[] touched;
+    private int touchedCount;
+
+    // Distances to the target and the next state on the way there, for the backward half of a bidirectional
+    // run; made on first use
+    private double[] towardTarget;
+    private int[] nextState;
+    private StateHeap backwardHeap;
+
+    // Twice the midpoint of the target street of a goal-directed run, and its landmark distances if any
+    private double targetX2, targetY2;
+    private Landmarks landmarks;
+    private double[] landmarkTarget;
+
+    /**
+     * Prepare a search over the given map.
+     * @param map -- the compiled map to search
+     * @param model -- the cost of each turn
+     */
+    TurnSearch(RoadGraph map, TurnCostModel model) {
+        this.map = map;
+        useTurnCosts(model);
+        this.distance = new double[map.stateCount()];
+        this.parent = new int[map.stateCount()];
+        this.origin = new int[map.stateCount()];
+        this.heap = new StateHeap(map.stateCount());
+        this.touched = new int[map.stateCount()];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
+        Arrays.fill(origin, -1);
+    }
+
+    // The map this search runs over
+    RoadGraph map() {
+        return map;
+    }
+
+    // The turn costs this search uses
+    TurnCostModel model() {
+        return model;
+    }
+
+    /**
+     * Use other turn costs from the next run on, so one search can serve routes under several models.
+     */
+    void useTurnCosts(TurnCostModel model) {
+        this.model = model;
+        this.turnCost = model.costs();
+        this.overrideRow = model.overrideRows(map);
+        this.overrideCost = model.overrideCosts(map);
+    }
+
+    // The cost of a turn at an intersection
+    private double turnCost(int node, TurnDirection turn) {
+        int row = overrideRow == null ? -1 : overrideRow[node];
+        return row < 0 ? turnCost[turn.ordinal()] : overrideCost[row + turn.ordinal()];
+    }
+
+    /**
+     * Search outwards from a start state, settling states in order of distance.
+     * @param start -- the state the routes start from
+     * @param targetStreet -- stop once either direction of this street is settled; -1 to settle every reachable state
+     * @return -- the settled state on the target street, or -1 if the target is unreachable or not given
+     */
+    int run(int start, int targetStreet) {
+        return run(new int[]{start}, targetStreet);
+    }
+
+    /**
+     * Search outwards from several start states at once.  Every state is reached from its closest start, and
+     * origins() tells which one that was.
+     * @param starts -- the states the routes start from
+     * @param targetStreet -- stop once either direction of this street is settled; -1 to settle every reachable state
+     * @return -- the settled state on the target street, or -1 if the target is unreachable or not given
+     */
+    int run(int[] starts, int targetStreet) {
+        return search(starts, targetStreet, false);
+    }
+
+    /**
+     * Search from a start state towards one target street only (A*).  States are settled in order of their
+     * distance plus the straight-line distance from the middle of their street to the middle of the target
+     * street.  Every leg of a route runs between street midpoints through an intersection, so that bound never
+     * overestimates and never drops by more than a leg's cost: the route found is still the shortest, but
+     * streets leading away from the target are rarely expanded.
+     *
+     * Only the states on the way to the target are settled, so the distances of other states are not final.
+     * @param start -- the state the route starts from
+     * @param targetStreet -- the street to reach, in either direction
+     * @return -- the settled state on the target street, or -1 if it is unreachable
+     */
+    int runToward(int start, int targetStreet) {
+        return runToward(start, targetStreet, null);
+    }
+
+    /**
+     * Search towards one target street as runToward does, also bounding the distance left with the landmark
+     * tables when they were computed for this map and these turn costs.  States the landmarks prove cannot
+     * reach the target are never expanded.
+     * @param landmarks -- the landmark tables, or null to use the straight-line bound alone
+     */
+    int runToward(int start, int targetStreet, Landmarks landmarks) {
+        targetX2 = (double) map.nodeX(map.tailNode(2 * targetStreet)) + map.nodeX(map.headNode(2 * targetStreet));
+        targetY2 = (double) map.nodeY(map.tailNode(2 * targetStreet)) + map.nodeY(map.headNode(2 * targetStreet));
+        // The tables hold no-left-turn distances, which only bound routes under the same costs
+        this.landmarks = landmarks != null && landmarks.map() == map && model == TurnCostModel.NO_LEFT_TURN ? landmarks : null;
+        if (this.landmarks != null) {
+            landmarkTarget = this.landmarks.target(targetStreet, landmarkTarget);
+        }
+        return search(new int[]{start}, targetStreet, true);
+    }
+
+    /**
+     * Search for the shortest route from a start state to one target street from both ends at once.  A forward
+     * search from the start and a backward search from both directions of the target street, which follows each
+     * turn in reverse, take turns to settle the state nearest their own end.  Every time a state gets a label
+     * from both, a route through it is known; once the two nearest unsettled distances add up to no less than
+     * the shortest such route, no shorter one remains.  Each search only reaches about half as far as a
+     * one-sided search would.
+     *
+     * Only the states near the route are settled, so the distances left behind are not final.
+     * @param start -- the state the route starts from
+     * @param targetStreet -- the street to reach, in either direction
+     * @return -- the states of the route, starting state first, or null if the target is unreachable
+     */
+    int[] runBidirectional(int start, int targetStreet) {
+        if (towardTarget == null) {
+            towardTarget = new double[map.stateCount()];
+            nextState = new int[map.stateCount()];
+            backwardHeap = new StateHeap(map.stateCount());
+            Arrays.fill(towardTarget, Double.POSITIVE_INFINITY);
+            Arrays.fill(nextState, -1);
+        }
+        reset();
+
+        touchIfNew(start);
+        distance[start] = 0.0;
+        heap.push(start, 0.0);
+        for (int target = 2 * targetStreet; target <= 2 * targetStreet + 1; target++) {
+            touchIfNew(target);
+            towardTarget[target] = 0.0;
+            backwardHeap.push(target, 0.0);
+        }
+
+        double shortest = distance[start] + towardTarget[start];
+        int meet = shortest == 0.0 ? start : -1;
+        while (!heap.isEmpty() && !backwardHeap.isEmpty() && heap.peekKey() + backwardHeap.peekKey() < shortest) {
+            // Settle on whichever side has the nearer state, keeping the two searches about the same size
+            boolean forward = heap.peekKey() <= backwardHeap.peekKey();
+            int state = forward ? heap.pop() : backwardHeap.pop();
+            if (forward) {
+                relaxForward(state, distance, parent, heap);
+            } else {
+                relaxBackward(state, towardTarget, nextState, backwardHeap);
+            }
+            // The neighbours just relaxed may now join the two halves more cheaply
+            int node = forward ? map.headNode(state) : map.tailNode(state);
+            for (int slot = map.firstOut(node); slot < map.endOut(node); slot++) {
+                int joined = forward ? map.outState(slot) : map.outState(slot) ^ 1;
+                if (distance[joined] + towardTarget[joined] < shortest) {
+                    shortest = distance[joined] + towardTarget[joined];
+                    meet = joined;
+                }
+            }
+        }
+        return meet < 0 ? null : join(meet);
+    }
+
+    // Lower bound on the distance from a state to the target street: the straight line between the middles of
+    // the two streets, or the landmark bound when that is larger
+    private double remaining(int state) {
+        int street = RoadGraph.street(state);
+        double dx = (double) map.nodeX(map.tailNode(2 * street)) + map.nodeX(map.headNode(2 * street)) - targetX2;
+        double dy = (double) map.nodeY(map.tailNode(2 * street)) + map.nodeY(map.headNode(2 * street)) - targetY2;
+        double straight = Math.sqrt(dx * dx + dy * dy) / 2;
+        return landmarks == null ? straight : Math.max(straight, landmarks.bound(state, landmarkTarget));
+    }
+
+    private int search(int[] starts, int targetStreet, boolean guided) {
+        reset();
+
+        for (int i = 0; i < starts.length; i++) {
+            if (origin[starts[i]] < 0) {
+                touch(starts[i]);
+                distance[starts[i]] = 0.0;
+                origin[starts[i]] = i;
+                heap.push(starts[i], guided ? remaining(starts[i]) : 0.0);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int state = heap.pop();
+            int street = RoadGraph.street(state);
+            if (street == targetStreet) {
+                return state;
+            }
+
+            int head = map.headNode(state);
+            double base = distance[state] + map.length(street) / 2;
+            for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+                int next = map.outState(slot);
+                int nextStreet = RoadGraph.street(next);
+                if (nextStreet == street) {
+                    continue;
+                }
+                TurnDirection turn = map.turnAt(state, slot);
+                if (turn == null) {
+                    continue;
+                }
+                double nextDistance = base + map.length(nextStreet) / 2 + turnCost(head, turn);
+                if (nextDistance < distance[next]) {
+                    if (distance[next] == Double.POSITIVE_INFINITY) {
+                        touch(next);
+                    }
+                    distance[next] = nextDistance;
+                    parent[next] = state;
+                    origin[next] = origin[state];
+                    double key = guided ? nextDistance + remaining(next) : nextDistance;
+                    if (key != Double.POSITIVE_INFINITY) {
+                        heap.push(next, key);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Settle every state reachable from a start, keeping the streets furthest from it.  A street is as far as
+     * the nearer of its two directions, so its distance is known the moment its first direction settles; states
+     * settle in order of distance, so the streets kept only ever need a small sorted window.
+     * @param start -- the state the routes start from
+     * @param streets -- filled with the furthest streets, furthest first; its length is how many to keep
+     * @param distances -- filled with the distance of each of those streets
+     * @return -- the number of streets filled in, fewer than asked if fewer are reachable
+     */
+    int furthest(int start, int[] streets, double[] distances) {
+        reset();
+
+        touch(start);
+        distance[start] = 0.0;
+        heap.push(start, 0.0);
+        int found = 0;
+        while (!heap.isEmpty()) {
+            int state = heap.pop();
+            int other = state ^ 1;
+            if (distance[other] == Double.POSITIVE_INFINITY || heap.contains(other)) {
+                found = keep(RoadGraph.street(state), distance[state], streets, distances, found);
+            }
+            relaxForward(state, distance, parent, heap);
+        }
+        return found;
+    }
+
+    /**
+     * Settle the states whose streets can be driven onto within a budget from a start.  The distance to a state
+     * is to the middle of its street, so its street is entered half a street earlier; states entered beyond the
+     * budget are never expanded, and the search ends as soon as the budget is used up in every direction.
+     * @param start -- the state the routes start from, from the middle of its street
+     * @param budget -- the longest distance to drive
+     * @return -- the states entered within the budget, nearest first; distance(state) is set for each
+     */
+    int[] within(int start, double budget) {
+        reset();
+
+        touch(start);
+        distance[start] = 0.0;
+        heap.push(start, 0.0);
+        int[] reached = new int[16];
+        int count = 0;
+        while (!heap.isEmpty()) {
+            int state = heap.pop();
+            double halfStreet = map.length(RoadGraph.street(state)) / 2;
+            if (distance[state] - halfStreet >= budget && state != start) {
+                continue;
+            }
+            if (count == reached.length) {
+                reached = Arrays.copyOf(reached, 2 * count);
+            }
+            reached[count++] = state;
+            // Streets leaving this one are entered at its far end at the earliest
+            if (distance[state] + halfStreet < budget) {
+                relaxForward(state, distance, parent, heap);
+            }
+        }
+        return Arrays.copyOf(reached, count);
+    }
+
+    // Insert a street into the window of the furthest ones, the street added later winning a tie
+    private static int keep(int street, double streetDistance, int[] streets, double[] distances, int found) {
+        int last = streets.length - 1;
+        if (found > last && !further(streetDistance, street, distances[last], streets[last])) {
+            return found;
+        }
+        int at = found > last ? last : found++;
+        while (at > 0 && further(streetDistance, street, distances[at - 1], streets[at - 1])) {
+            streets[at] = streets[at - 1];
+            distances[at] = distances[at - 1];
+            at--;
+        }
+        streets[at] = street;
+        distances[at] = streetDistance;
+        return found;
+    }
+
+    private static boolean further(double distance, int street, double otherDistance, int otherStreet) {
+        return distance > otherDistance || (distance == otherDistance && street > otherStreet);
+    }
+
+    /**
+     * Search backwards from target states, settling every state that can reach one of them.  Afterwards
+     * distance(state) is the length of the shortest route from the state to its closest target, and the parent
+     * of a state is the state driven after it on that route.
+     * @param targets -- the states the routes end on
+     */
+    void runBackward(int[] targets) {
+        reset();
+
+        for (int target : targets) {
+            if (distance[target] != 0.0) {
+                touch(target);
+                distance[target] = 0.0;
+                heap.push(target, 0.0);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int state = heap.pop();
+            relaxBackward(state, distance, parent, heap);
+        }
+    }
+
+    /**
+     * Bring up to date a table of shortest distances computed, with the same turn costs, on an older map of
+     * which this search's map is an extension.  Adding streets only adds states and the turns onto and off them,
+     * so every old distance is still reachable and can only shrink; the shrinking spreads out from the states
+     * of the new streets.
+     * @param label -- the distances of the older map, sized for this map with positive infinity for new states
+     * @param firstNewState -- the first state that is not in the older map
+     * @param backward -- true if the table holds distances to a target, false for distances from a start
+     */
+    void extend(double[] label, int firstNewState, boolean backward) {
+        reset();
+
+        // Reach every new state from its neighbours across the new turns
+        for (int state = firstNewState; state < label.length; state++) {
+            double best = backward ? bestSuccessor(state, label) : bestPredecessor(state, label);
+            if (best < label[state]) {
+                label[state] = best;
+                heap.push(state, best);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int state = heap.pop();
+            if (backward) {
+                relaxBackward(state, label, null, heap);
+            } else {
+                relaxForward(state, label, null, heap);
+            }
+        }
+    }
+
+    // Offer the states that can be driven just before a settled state a route through it, recording the settled
+    // state as their next one unless nexts is null
+    private void relaxBackward(int state, double[] label, int[] nexts, StateHeap queue) {
+        int tail = map.tailNode(state);
+        int street = RoadGraph.street(state);
+        int slot = map.exitSlot(state);
+        double base = label[state] + map.length(street) / 2;
+        for (int in = map.firstOut(tail); in < map.endOut(tail); in++) {
+            int previous = map.outState(in) ^ 1;
+            int previousStreet = RoadGraph.street(previous);
+            if (previousStreet == street) {
+                continue;
+            }
+            TurnDirection turn = map.turnAt(previous, slot);
+            if (turn == null) {
+                continue;
+            }
+            double previousDistance = base + map.length(previousStreet) / 2 + turnCost(tail, turn);
+            if (previousDistance < label[previous]) {
+                if (nexts != null) {
+                    touchIfNew(previous);
+                    nexts[previous] = state;
+                }
+                label[previous] = previousDistance;
+                queue.push(previous, previousDistance);
+            }
+        }
+    }
+
+    // Offer the states that can be driven just after a settled state a route through it, recording the settled
+    // state as their parent unless parents is null
+    private void relaxForward(int state, double[] label, int[] parents, StateHeap queue) {
+        int head = map.headNode(state);
+        int street = RoadGraph.street(state);
+        double base = label[state] + map.length(street) / 2;
+        for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+            int next = map.outState(slot);
+            int nextStreet = RoadGraph.street(next);
+            if (nextStreet == street) {
+                continue;
+            }
+            TurnDirection turn = map.turnAt(state, slot);
+            if (turn == null) {
+                continue;
+            }
+            double nextDistance = base + map.length(nextStreet) / 2 + turnCost(head, turn);
+            if (nextDistance < label[next]) {
+                if (parents != null) {
+                    touchIfNew(next);
+                    parents[next] = state;
+                }
+                label[next] = nextDistance;
+                queue.push(next, nextDistance);
+            }
+        }
+    }
+
+    // The shortest distance to a state through any state that can be driven just before it
+    private double bestPredecessor(int state, double[] label) {
+        int tail = map.tailNode(state);
+        int street = RoadGraph.street(state);
+        int slot = map.exitSlot(state);
+        double best = Double.POSITIVE_INFINITY;
+        for (int in = map.firstOut(tail); in < map.endOut(tail); in++) {
+            int previous = map.outState(in) ^ 1;
+            int previousStreet = RoadGraph.street(previous);
+            TurnDirection turn = previousStreet == street ? null : map.turnAt(previous, slot);
+            if (turn != null) {
+                best = Math.min(best, label[previous] + (map.length(previousStreet) + map.length(street)) / 2 + turnCost(tail, turn));
+            }
+        }
+        return best;
+    }
+
+    // The shortest distance from a state through any state that can be driven just after it
+    private double bestSuccessor(int state, double[] label) {
+        int head = map.headNode(state);
+        int street = RoadGraph.street(state);
+        double best = Double.POSITIVE_INFINITY;
+        for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+            int next = map.outState(slot);
+            int nextStreet = RoadGraph.street(next);
+            TurnDirection turn = nextStreet == street ? null : map.turnAt(state, slot);
+            if (turn != null) {
+                best = Math.min(best, label[next] + (map.length(street) + map.length(nextStreet)) / 2 + turnCost(head, turn));
+            }
+        }
+        return best;
+    }
+
+    // Forget the states reached by the previous run
+    private void reset() {
+        for (int i = 0; i < touchedCount; i++) {
+            int state = touched[i];
+            distance[state] = Double.POSITIVE_INFINITY;
+            parent[state] = -1;
+            origin[state] = -1;
+            if (towardTarget != null) {
+                towardTarget[state] = Double.POSITIVE_INFINITY;
+                nextState[state] = -1;
+            }
+        }
+        touchedCount = 0;
+        heap.clear();
+        if (backwardHeap != null) {
+            backwardHeap.clear();
+        }
+    }
+
+    private void touch(int state) {
+        touched[touchedCount++] = state;
+    }
+
+    // Touch a state unless a search from either end has already reached it
+    private void touchIfNew(int state) {
+        if (distance[state] == Double.POSITIVE_INFINITY && (towardTarget == null || towardTarget[state] == Double.POSITIVE_INFINITY)) {
+            touch(state);
+        }
+    }
+
+    // The route of the last bidirectional run through the state where its two halves meet
+    private int[] join(int meet) {
+        int[] first = path(parent, meet);
+        int legs = first.length;
+        for (int at = nextState[meet]; at >= 0; at = nextState[at]) {
+            legs++;
+        }
+        int[] states = Arrays.copyOf(first, legs);
+        legs = first.length;
+        for (int at = nextState[meet]; at >= 0; at = nextState[at]) {
+            states[legs++] = at;
+        }
+        return states;
+    }
+
+    // Distance to a state from the last run, or positive infinity if it was not reached
+    double distance(int state) {
+        return distance[state];
+    }
+
+    // Parent of every state on its shortest route from the last run, -1 for the start and unreached states
+    int[] parents() {
+        return parent;
+    }
+
+    // Index of the start each state was reached from in the last run, -1 for unreached states
+    int[] origins() {
+        return origin;
+    }
+
+    // Distances of every state from the last run
+    double[] distances() {
+        return distance;
+    }
+
+    /**
+     * The states of the shortest route from the start to the given state, found by the last run.
+     */
+    int[] path(int state) {
+        return path(parent, state);
+    }
+
+    /**
+     * Follow parent pointers back from a state to the start of its route.  The parent array is how searches
+     * store the routes they find: each state's route is its parent's route plus one leg, so every prefix is
+     * stored once, and a route is only copied out here when one is returned.
+     * @return -- the states of the route, starting state first
+     */
+    static int[] path(int[] parent, int state) {
+        int legs = 0;
+        for (int at = state; at >= 0; at = parent[at]) {
+            legs++;
+        }
+        int[] states = new int[legs];
+        for (int at = state; at >= 0; at = parent[at]) {
+            states[--legs] = at;
+        }
+        return states;
+    }
+}
@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class ContractionHierarchyTest {
+
+    // A jittered grid of the given size with streets pointing either way
+    private static List<Street> grid(int size, long seed) {
+        Random random = new Random(seed);
+        Point[][] points = new Point[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                points[i][j] = new Point(100 * i + random.nextInt(40) - 20, 100 * j + random.nextInt(40) - 20);
+            }
+        }
+        List<Street> streets = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i + 1 < size) streets.add(street(streets.size(), points[i][j], points[i + 1][j], random.nextBoolean()));
+                if (j + 1 < size) streets.add(street(streets.size(), points[i][j], points[i][j + 1], random.nextBoolean()));
+            }
+        }
+        return streets;
+    }
+
+    private static Street street(int id, Point a, Point b, boolean flip) {
+        return flip ? new Street("St " + id, b, a) : new Street("St " + id, a, b);
+    }
+
+    // Length of a route through the given states, failing if any step is not an allowed turn
+    private static double drive(RoadGraph map, int[] states) {
+        double distance = 0.0;
+        for (int i = 1; i < states.length; i++) {
+            int previous = states[i - 1];
+            int head = map.headNode(previous);
+            TurnDirection turn = null;
+            for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+                if (map.outState(slot) == states[i]) turn = map.turnAt(previous, slot);
+            }
+            assertNotNull(turn, "no turn between " + previous + " and " + states[i]);
+            assertTrue(turn == TurnDirection.Right || turn == TurnDirection.Straight, "turned " + turn);
+            distance += (map.length(RoadGraph.street(previous)) + map.length(RoadGraph.street(states[i]))) / 2;
+        }
+        return distance;
+    }
+
+    @Test
+    void testRoutesMatchSearch() {
+        RoadGraph map = new RoadGraph(grid(6, 9), 30);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(map);
+        assertSame(map, hierarchy.map());
+        ContractionHierarchy.Query query = hierarchy.newQuery();
+
+        TurnSearch search = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+        for (int start = 0; start < map.stateCount(); start++) {
+            for (int target = 0; target < map.streetCount(); target++) {
+                int arrival = search.run(new int[]{start}, target);
+                int[] states = query.route(start, target);
+                if (arrival < 0) {
+                    assertNull(states);
+                    continue;
+                }
+                // Shortcuts unpack into the legal turns of a route as short as the plain search's
+                assertEquals(start, states[0]);
+                assertEquals(target, RoadGraph.street(states[states.length - 1]));
+                assertEquals(search.distance(arrival), drive(map, states), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void testSingleStreet() {
+        List<Street> streets = new ArrayList<>();
+        streets.add(new Street("Only", new Point(0, 0), new Point(100, 0)));
+        RoadGraph map = new RoadGraph(streets, 30);
+        ContractionHierarchy.Query query = ContractionHierarchy.build(map).newQuery();
+        assertArrayEquals(new int[]{1}, query.route(1, 0));
+    }
+}
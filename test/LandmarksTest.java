@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class LandmarksTest {
+
+    // A jittered grid of the given size with streets pointing either way
+    private static List<Street> grid(int size, long seed) {
+        Random random = new Random(seed);
+        Point[][] points = new Point[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                points[i][j] = new Point(100 * i + random.nextInt(40) - 20, 100 * j + random.nextInt(40) - 20);
+            }
+        }
+        List<Street> streets = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i + 1 < size) streets.add(street(streets.size(), points[i][j], points[i + 1][j], random.nextBoolean()));
+                if (j + 1 < size) streets.add(street(streets.size(), points[i][j], points[i][j + 1], random.nextBoolean()));
+            }
+        }
+        return streets;
+    }
+
+    private static Street street(int id, Point a, Point b, boolean flip) {
+        return flip ? new Street("St " + id, b, a) : new Street("St " + id, a, b);
+    }
+
+    @Test
+    void testBoundNeverOverestimates() {
+        RoadGraph map = new RoadGraph(grid(6, 3), 30);
+        Landmarks landmarks = Landmarks.select(map, 4);
+        assertEquals(4, landmarks.count());
+
+        TurnSearch search = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+        for (int target = 0; target < map.streetCount(); target++) {
+            double[] targetDistances = landmarks.target(target, null);
+            search.runBackward(new int[]{2 * target, 2 * target + 1});
+            for (int state = 0; state < map.stateCount(); state++) {
+                double bound = landmarks.bound(state, targetDistances);
+                double distance = search.distance(state);
+                assertTrue(bound <= distance + 1e-9, "bound " + bound + " exceeds " + distance);
+            }
+        }
+    }
+
+    @Test
+    void testExtendMatchesFullSearch() {
+        List<Street> streets = grid(7, 5);
+        RoadGraph small = new RoadGraph(streets.subList(0, 50), 30);
+        RoadGraph big = new RoadGraph(streets, 30);
+        Landmarks extended = Landmarks.select(small, 3).extend(big);
+        assertSame(big, extended.map());
+
+        // The distances for every street must be those a full search over the bigger map finds
+        TurnSearch search = new TurnSearch(big, TurnCostModel.NO_LEFT_TURN);
+        for (int target = 0; target < big.streetCount(); target++) {
+            double[] actual = extended.target(target, null);
+            for (int i = 0; i < extended.count(); i++) {
+                int landmark = landmarkOf(extended, small, i);
+                search.run(new int[]{2 * landmark, 2 * landmark + 1}, -1);
+                assertEquals(search.distance(2 * target), actual[4 * i], 1e-9);
+                assertEquals(search.distance(2 * target + 1), actual[4 * i + 1], 1e-9);
+                search.runBackward(new int[]{2 * landmark, 2 * landmark + 1});
+                assertEquals(search.distance(2 * target), actual[4 * i + 2], 1e-9);
+                assertEquals(search.distance(2 * target + 1), actual[4 * i + 3], 1e-9);
+            }
+        }
+    }
+
+    // The landmark street with the given index: the one street whose distance from itself is zero
+    private static int landmarkOf(Landmarks landmarks, RoadGraph small, int index) {
+        for (int street = 0; street < small.streetCount(); street++) {
+            if (landmarks.target(street, null)[4 * index] == 0.0) return street;
+        }
+        throw new AssertionError("No landmark " + index);
+    }
+
+    @Test
+    void testSelectRejectsNoLandmarks() {
+        RoadGraph map = new RoadGraph(grid(2, 1), 30);
+        assertThrows(IllegalArgumentException.class, () -> Landmarks.select(map, 0));
+        assertEquals(map.streetCount(), Landmarks.select(map, 100).count());
+    }
+}
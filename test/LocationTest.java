@@ -1,5 +1,7 @@
 import org.junit.Test;
 import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.Set;
 
 public class LocationTest {
 
@@ -72,4 +74,19 @@ public class LocationTest {
         assertEquals("Second Ave", location2.getStreetId());
         assertEquals(StreetSide.Right, location2.getStreetSide());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEqualLocations() {
+        Location location = new Location("A St", StreetSide.Left);
+        assertEquals(location, new Location("A St", StreetSide.Left));
+        assertEquals(location.hashCode(), new Location("A St", StreetSide.Left).hashCode());
+        assertFalse(location.equals(new Location("A St", StreetSide.Right)));
+        assertFalse(location.equals(new Location("B St", StreetSide.Left)));
+        assertEquals(new Location(null, null), new Location(null, null));
+
+        Set<Location> locations = new HashSet<>();
+        locations.add(location);
+        locations.add(new Location("A St", StreetSide.Left));
+        assertEquals(1, locations.size());
+    }
+}
@@ -0,0 +1,34 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntMapTest {
+
+    @Test
+    void testPutIfAbsentKeepsFirstValue() {
+        LongIntMap map = new LongIntMap(2);
+        assertEquals(0, map.putIfAbsent(RoadGraph.key(0, 0), 0));
+        assertEquals(1, map.putIfAbsent(RoadGraph.key(100, -100), 1));
+        assertEquals(0, map.putIfAbsent(RoadGraph.key(0, 0), 7));
+        assertEquals(2, map.size());
+        assertEquals(1, map.get(RoadGraph.key(100, -100)));
+        assertEquals(-1, map.get(RoadGraph.key(-100, 100)));
+    }
+
+    @Test
+    void testGrowsPastExpectedSize() {
+        LongIntMap map = new LongIntMap(1);
+        for (int i = 0; i < 10000; i++) {
+            map.putIfAbsent(RoadGraph.key(i * 100, -i), i);
+        }
+        assertEquals(10000, map.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, map.get(RoadGraph.key(i * 100, -i)));
+        }
+        assertEquals(-1, map.get(RoadGraph.key(1, 1)));
+    }
+
+    @Test
+    void testNegativeValueRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LongIntMap(4).putIfAbsent(0L, -1));
+    }
+}
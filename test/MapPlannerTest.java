@@ -2,7 +2,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 class MapPlannerTest {
 
@@ -41,6 +52,29 @@ class MapPlannerTest {
         assertTrue(intersectionStreets.stream().anyMatch(s -> s.getStreetId().equals("B St")));
     }
 
+    @Test
+    void testAdjacentStreetsWhileAdding() {
+        mapPlanner.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        mapPlanner.compile();
+        mapPlanner.addStreet("B St", new Point(100, 0), new Point(100, 100));
+        // Streets added since the last compile are listed with those compiled into it
+        assertEquals(new HashSet<>(Arrays.asList(new Location("A St", StreetSide.Left), new Location("B St", StreetSide.Right))),
+                mapPlanner.getAdjacentStreets("100,0"));
+        assertEquals(Collections.singleton(new Location("B St", StreetSide.Left)), mapPlanner.getAdjacentStreets("100,100"));
+        mapPlanner.printGraph();
+
+        // Looking up an intersection after each street added must not compile the whole map again
+        long started = System.nanoTime();
+        for (int i = 0; i < 8000; i++) {
+            mapPlanner.addStreet("S" + i, new Point(100 * i, 200), new Point(100 * i + 100, 200));
+            assertEquals(1, mapPlanner.getAdjacentStreets((100 * i + 100) + ",200").size());
+        }
+        assertTrue(System.nanoTime() - started < 1000000000L);
+        assertEquals(2, mapPlanner.getAdjacentStreets("100,200").size());
+        assertEquals(8002, mapPlanner.compile().streetCount());
+        assertEquals(2, mapPlanner.getAdjacentStreets("100,200").size());
+    }
+
     @Test
     void testNonExistentIntersection() {
         mapPlanner.addStreet("A St", new Point(0, 0), new Point(100, 0));
@@ -108,6 +142,28 @@ class MapPlannerTest {
         assertEquals("Tenth Blvd", mapPlanner.furthestStreet());
     }
 
+    @Test
+    void testFurthestStreets() {
+        MapPlanner MP = new MapPlanner(30);
+        assertThrows(IllegalArgumentException.class, () -> MP.furthestStreets(0));
+        assertNull(MP.furthestStreets(3));
+
+        for (int i = 0; i < 5; i++) {
+            MP.addStreet("S" + i, new Point(100 * i, 0), new Point(100 * i + 100, 0));
+        }
+        MP.depotLocation(new Location("S0", StreetSide.Right));
+        Map<String, Double> furthest = MP.furthestStreets(3);
+        assertEquals(Arrays.asList("S4", "S3", "S2"), new ArrayList<>(furthest.keySet()));
+        assertEquals(400.0, furthest.get("S4"), 0.001);
+        assertEquals(200.0, furthest.get("S2"), 0.001);
+        assertEquals(5, MP.furthestStreets(10).size());
+
+        // A street as far as the furthest one wins the tie when added later
+        MP.addStreet("North", new Point(400, 0), new Point(400, 100));
+        assertEquals("North", MP.furthestStreet());
+        assertEquals(Arrays.asList("North", "S4"), new ArrayList<>(MP.furthestStreets(2).keySet()));
+    }
+
     // This is the test that is not working as my code is not handling route with U turn
     // but the destination is begin which is mentioned in the limitation in the documentation
 
@@ -190,6 +246,39 @@ class MapPlannerTest {
     }
 
 
+    @Test
+    public void testRouteNoLeftTurnIsShortest(){
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("D St", new Point(100, 0), new Point(300, 0));
+        MP.addStreet("E St", new Point(300, 0), new Point(300, -100));
+        MP.addStreet("F St", new Point(300, -100), new Point(100, -100));
+        MP.addStreet("B St", new Point(100, 0), new Point(100, -100));
+        MP.addStreet("C St", new Point(100, -100), new Point(0, -100));
+
+        MP.depotLocation(new Location("A St", StreetSide.Right));
+        Route route = MP.routeNoLeftTurn(new Location("C St", StreetSide.Right));
+
+        assertNotNull(route);
+        assertEquals(3, route.legs());
+        assertEquals("B St", route.turnOnto(2));
+        assertEquals(TurnDirection.Right, route.turnDirection(2));
+        assertEquals(TurnDirection.Right, route.turnDirection(3));
+        assertEquals(200.0, route.length(), 0.001);
+    }
+
+    @Test
+    public void testRouteNoLeftTurnToDepotStreet(){
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        MP.depotLocation(new Location("A St", StreetSide.Left));
+
+        Route route = MP.routeNoLeftTurn(new Location("A St", StreetSide.Right));
+        assertNotNull(route);
+        assertEquals(1, route.legs());
+        assertNull(MP.routeNoLeftTurn(new Location("Nowhere St", StreetSide.Right)));
+    }
+
     @Test
     public void testWithLoops(){
         MapPlanner MP = new MapPlanner(30);
@@ -204,4 +293,511 @@ class MapPlannerTest {
         Route route = MP.routeNoLeftTurn(destination);
         assertNull(route);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMultipleDepots(){
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("B St", new Point(100, 0), new Point(100, 100));
+        MP.addStreet("2nd Ave", new Point(100, 100), new Point(200, 100));
+        MP.addStreet("2.5 Ave", new Point(200, 100), new Point(200, 0));
+        MP.addStreet("2.75 Ave", new Point(200, 0), new Point(100, 0));
+        MP.addStreet("6th Ave", new Point(200, 300), new Point(300, 300));
+
+        assertTrue(MP.addDepot("North Yard", new Location("2nd Ave", StreetSide.Right)));
+        assertTrue(MP.addDepot("South Yard", new Location("2.75 Ave", StreetSide.Right)));
+        assertFalse(MP.addDepot("North Yard", new Location("A St", StreetSide.Right)));
+        assertFalse(MP.addDepot("Lost Yard", new Location("Nowhere St", StreetSide.Right)));
+
+        Location target = new Location("A St", StreetSide.Right);
+        assertEquals("South Yard", MP.nearestDepot(target));
+        assertEquals(2, MP.routeFromNearestDepot(target).legs());
+        assertEquals(4, MP.routeFromDepot("North Yard", target).legs());
+
+        assertNull(MP.nearestDepot(new Location("6th Ave", StreetSide.Right)));
+        assertNull(MP.routeFromDepot("Lost Yard", target));
+    }
+
+    @Test
+    public void testAddDepotKeepsCachedWork(){
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("B St", new Point(100, 0), new Point(100, 100));
+        MP.addStreet("2nd Ave", new Point(100, 100), new Point(200, 100));
+        MP.addStreet("2.5 Ave", new Point(200, 100), new Point(200, 0));
+        MP.addStreet("2.75 Ave", new Point(200, 0), new Point(100, 0));
+        MP.depotLocation(new Location("B St", StreetSide.Right));
+        MP.setRouteCacheSize(4);
+        Location target = new Location("A St", StreetSide.Right);
+        Route cached = MP.routeNoLeftTurn(target);
+
+        MP.addDepot("North Yard", new Location("2nd Ave", StreetSide.Right));
+        ShortestPathTree north = MP.depotTree("North Yard");
+        assertEquals("North Yard", MP.nearestDepot(target));
+
+        // A new depot changes no street, so the cached route and the other depot's tree stay
+        MP.addDepot("South Yard", new Location("2.75 Ave", StreetSide.Right));
+        assertEquals(cached.length(), MP.routeNoLeftTurn(target).length(), 0.0);
+        assertEquals(1, MP.routeCache().hits());
+        assertSame(north, MP.depotTree("North Yard"));
+        assertTrue(north.isCurrent());
+        assertEquals("South Yard", MP.nearestDepot(target));
+        assertEquals(new Location("2.75 Ave", StreetSide.Right), MP.getDepot("South Yard"));
+    }
+
+    @Test
+    public void testBatchRoutes(){
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("B St", new Point(100, 0), new Point(100, 100));
+        MP.addStreet("2nd Ave", new Point(100, 100), new Point(200, 100));
+        MP.addStreet("2.5 Ave", new Point(200, 100), new Point(200, 0));
+        MP.addStreet("2.75 Ave", new Point(200, 0), new Point(100, 0));
+        MP.addStreet("6th Ave", new Point(200, 300), new Point(300, 300));
+        List<Location> targets = Arrays.asList(
+                new Location("A St", StreetSide.Right),
+                new Location("6th Ave", StreetSide.Right),
+                new Location("2.75 Ave", StreetSide.Right));
+
+        assertNull(MP.routeNoLeftTurn(targets, 4));
+
+        MP.depotLocation(new Location("2nd Ave", StreetSide.Right));
+        List<Route> routes = MP.routeNoLeftTurn(targets, 4);
+        assertEquals(3, routes.size());
+        assertEquals(4, routes.get(0).legs());
+        assertNull(routes.get(1));
+        assertEquals(3, routes.get(2).legs());
+
+        MP.addDepot("North Yard", new Location("2nd Ave", StreetSide.Right));
+        MP.addDepot("South Yard", new Location("2.75 Ave", StreetSide.Right));
+        routes = MP.routeFromDepots(Arrays.asList("North Yard", "South Yard", "Lost Yard"), targets, 2);
+        assertEquals(4, routes.get(0).legs());
+        assertNull(routes.get(1));
+        assertNull(routes.get(2));
+
+        assertNull(MP.routeFromDepots(Arrays.asList("North Yard"), targets, 2));
+        assertThrows(IllegalArgumentException.class, () -> MP.routeNoLeftTurn(targets, 0));
+    }
+
+    @Test
+    public void testRoutingWhileAddingStreets() throws Exception {
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("Main St", new Point(0, 0), new Point(100, 0));
+        MP.depotLocation(new Location("Main St", StreetSide.Right));
+
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 500; i++) {
+                MP.addStreet("Main St " + i, new Point(100 * i, 0), new Point(100 * (i + 1), 0));
+            }
+        });
+        writer.start();
+
+        Location target = new Location("Main St 1", StreetSide.Right);
+        while (writer.isAlive()) {
+            Route route = MP.routeNoLeftTurn(target);
+            if (route != null) {
+                assertEquals(2, route.legs());
+            }
+            MP.furthestStreet();
+        }
+        writer.join();
+
+        assertEquals(501, MP.compile().streetCount());
+        assertEquals("Main St 500", MP.furthestStreet());
+    }
+
+    @Test
+    public void testLoadStreets() {
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("Main St", new Point(0, 0), new Point(100, 0));
+        String file = "# id, x1, y1, x2, y2\n"
+                + "Side St, 100, 0, 100, -100\n"
+                + "\n"
+                + "Corner, The, 100,-100, 0,-100\n";
+        assertTrue(MP.loadStreets(new StringReader(file)));
+
+        assertEquals(3, MP.compile().streetCount());
+        assertTrue(new Point(0, -100).equals(MP.getStreet("Corner, The").getEnd()));
+        assertEquals(2, MP.getAdjacentStreets("100,-100").size());
+        MP.depotLocation(new Location("Main St", StreetSide.Right));
+        assertEquals(2, MP.routeNoLeftTurn(new Location("Side St", StreetSide.Right)).legs());
+    }
+
+    @Test
+    public void testLoadStreetsRejectsWholeFile() {
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("Main St", new Point(0, 0), new Point(100, 0));
+
+        assertFalse(MP.loadStreets(new StringReader("Side St,100,0,100,100\nSide St,0,0,0,100\n")));
+        assertFalse(MP.loadStreets(new StringReader("Side St,100,0,100,100\nMain St,0,0,0,100\n")));
+        assertFalse(MP.loadStreets(new StringReader("Side St,100,0,100,100\nBad St,0,0,0\n")));
+        assertFalse(MP.loadStreets(new StringReader("Side St,100,0,100,north\n")));
+        assertFalse(MP.loadStreets((Reader) null));
+        assertNull(MP.getStreet("Side St"));
+        assertEquals(1, MP.compile().streetCount());
+    }
+
+    @Test
+    public void testSaveAndLoadMap() throws Exception {
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("Main St", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("Side St", new Point(100, 0), new Point(100, -100));
+        MP.addStreet("Back St", new Point(100, -100), new Point(0, -100));
+
+        Path file = Files.createTempFile("planner", ".map");
+        try {
+            assertTrue(MP.saveMap(file));
+            MapPlanner loaded = MapPlanner.loadMap(file);
+            RoadGraph map = loaded.compile();
+            assertEquals(3, map.streetCount());
+            assertEquals(2, loaded.getAdjacentStreets("100,-100").size());
+            assertSame(loaded.getStreet("Side St"), loaded.getStreet("Side St"));
+            assertEquals(new Point(100, -100), loaded.getStreet("Side St").getEnd());
+            assertNull(loaded.getStreet("Nowhere St"));
+
+            loaded.depotLocation(new Location("Main St", StreetSide.Right));
+            Route route = loaded.routeNoLeftTurn(new Location("Back St", StreetSide.Right));
+            assertEquals(3, route.legs());
+            assertEquals(200.0, route.length(), 0.001);
+            // Routing and lookups use the tables of the file as they are
+            assertSame(map, loaded.compile());
+            assertEquals("Side St", loaded.snapToStreet(new Point(110, -50)).getStreetId());
+
+            // The loaded map keeps growing like any other
+            assertTrue(loaded.addStreet("End St", new Point(0, -100), new Point(0, -200)));
+            assertEquals(4, loaded.compile().streetCount());
+            assertEquals("End St", loaded.furthestStreet());
+        } finally {
+            Files.delete(file);
+        }
+        assertNull(MapPlanner.loadMap(file));
+    }
+
+    @Test
+    public void testSaveOverLoadedMap() throws Exception {
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("Main St", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("Side St", new Point(100, 0), new Point(100, -100));
+
+        Path file = Files.createTempFile("planner", ".map");
+        try {
+            assertTrue(MP.saveMap(file));
+            MapPlanner loaded = MapPlanner.loadMap(file);
+            loaded.depotLocation(new Location("Main St", StreetSide.Right));
+
+            // A bigger map saved over the file must not disturb the planner reading the old one
+            MP.addStreet("Back St", new Point(100, -100), new Point(0, -100));
+            MP.addStreet("End St", new Point(0, -100), new Point(0, -200));
+            assertTrue(MP.saveMap(file));
+            assertEquals("Side St", loaded.furthestStreet());
+            assertEquals(2, loaded.compile().streetCount());
+            assertEquals("Main St", loaded.compile().streetId(0));
+            assertEquals(4, MapPlanner.loadMap(file).compile().streetCount());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPointsAndLocationsAreInterned() {
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("Main St", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("Side St", new Point(100, 0), new Point(100, -100));
+        assertSame(MP.getStreet("Main St").getEnd(), MP.getStreet("Side St").getStart());
+
+        Location side = new Location("Side St", StreetSide.Right);
+        MP.addDepot("North", side);
+        assertSame(MP.getDepot("North"), MP.getAdjacentStreets("100,0").stream().filter(side::equals).findFirst().get());
+        assertSame(MP.snapToStreet(new Point(110, -50)), MP.snapToStreet(new Point(120, -60)));
+    }
+
+    // Add a jittered 9 x 9 grid with streets pointing either way, named "St 0" onwards, to the planners
+    private static int addGrid(long seed, MapPlanner... planners) {
+        java.util.Random random = new java.util.Random(seed);
+        int[][] x = new int[9][9], y = new int[9][9];
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                x[i][j] = 100 * i + random.nextInt(40) - 20;
+                y[i][j] = 100 * j + random.nextInt(40) - 20;
+            }
+        }
+        int streets = 0;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                for (int[] step : new int[][]{{1, 0}, {0, 1}}) {
+                    int ni = i + step[0], nj = j + step[1];
+                    if (ni > 8 || nj > 8) continue;
+                    Point a = new Point(x[i][j], y[i][j]);
+                    Point b = new Point(x[ni][nj], y[ni][nj]);
+                    String id = "St " + streets++;
+                    Point start = random.nextBoolean() ? a : b;
+                    Point end = start == a ? b : a;
+                    for (MapPlanner planner : planners) {
+                        planner.addStreet(id, start, end);
+                    }
+                }
+            }
+        }
+        return streets;
+    }
+
+    // Check that single-destination routes to every street are as short as the routes of a full search
+    private static void assertShortestRoutes(MapPlanner MP, MapPlanner treePlanner, int streets) {
+        assertShortestRoutes(MP, treePlanner, streets, StreetSide.Right, MP::routeNoLeftTurn);
+    }
+
+    // Every route found by the given router is as short as the one in the tree, on the given side of each street
+    private static void assertShortestRoutes(MapPlanner MP, MapPlanner treePlanner, int streets, StreetSide side,
+                                             Function<Location, Route> router) {
+        MP.depotLocation(new Location("St 0", StreetSide.Right));
+        treePlanner.depotLocation(new Location("St 0", StreetSide.Right));
+        ShortestPathTree tree = treePlanner.noLeftTurnTree();
+        for (int i = 0; i < streets; i++) {
+            Location target = new Location("St " + i, side);
+            Route route = router.apply(target);
+            Route shortest = tree.route(target);
+            if (shortest == null) {
+                assertNull(route);
+            } else {
+                assertEquals(shortest.length(), route.length(), 0.001);
+                assertDrivable(MP, route, target);
+            }
+        }
+    }
+
+    // The route drives whole streets end to end from the depot street to the target street, never turning left or back
+    private static void assertDrivable(MapPlanner MP, Route route, Location target) {
+        assertEquals("St 0", route.turnOnto(1));
+        for (int i = 1; i <= route.legs(); i++) {
+            Leg leg = route.getLeg(i);
+            Street street = MP.getStreet(leg.getStreetTurnedOnto());
+            boolean forward = leg.getStartPoint().equals(street.getStart()) && leg.getEndPoint().equals(street.getEnd());
+            boolean backward = leg.getStartPoint().equals(street.getEnd()) && leg.getEndPoint().equals(street.getStart());
+            assertTrue(forward || backward, "leg " + i + " covers " + street.getId());
+            if (i == route.legs()) {
+                assertEquals(target.getStreetId(), street.getId());
+            }
+            if (i == 1) continue;
+
+            Leg previous = route.getLeg(i - 1);
+            assertEquals(previous.getEndPoint(), leg.getStartPoint(), "leg " + i + " starts where leg " + (i - 1) + " ends");
+            TurnDirection turn = previous.getStartPoint().turnType(previous.getEndPoint(), leg.getEndPoint(), MP.getDegree());
+            for (TurnDirection taken : Arrays.asList(turn, route.turnDirection(i))) {
+                assertNotEquals(TurnDirection.Left, taken, "turn onto leg " + i);
+                assertNotEquals(TurnDirection.UTurn, taken, "turn onto leg " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testGoalDirectedRoutesMatchTree() {
+        MapPlanner MP = new MapPlanner(30);
+        MapPlanner treePlanner = new MapPlanner(30);
+        int streets = addGrid(7, MP, treePlanner);
+        assertShortestRoutes(MP, treePlanner, streets);
+    }
+
+    @Test
+    public void testLandmarkRoutesMatchTree() throws Exception {
+        MapPlanner MP = new MapPlanner(30);
+        MapPlanner treePlanner = new MapPlanner(30);
+        int streets = addGrid(11, MP, treePlanner);
+        assertTrue(MP.prepareLandmarks(4));
+        assertShortestRoutes(MP, treePlanner, streets);
+
+        // Landmarks follow new streets
+        MP.addStreet("Bypass", new Point(-100, -100), new Point(0, 0));
+        treePlanner.addStreet("Bypass", new Point(-100, -100), new Point(0, 0));
+        assertShortestRoutes(MP, treePlanner, streets);
+
+        // and are saved with the map
+        Path file = Files.createTempFile("landmarks", ".map");
+        try {
+            assertTrue(MP.saveMap(file));
+            MapPlanner loaded = MapPlanner.loadMap(file);
+            assertNotNull(loaded.compile().storedLandmarks());
+            assertShortestRoutes(loaded, treePlanner, streets);
+        } finally {
+            Files.delete(file);
+        }
+
+        assertFalse(new MapPlanner(30).prepareLandmarks(4));
+        assertThrows(IllegalArgumentException.class, () -> MP.prepareLandmarks(0));
+    }
+
+    @Test
+    public void testReachableWithinMatchesTree() {
+        MapPlanner MP = new MapPlanner(30);
+        int streets = addGrid(19, MP);
+        MP.depotLocation(new Location("St 0", StreetSide.Right));
+        ShortestPathTree tree = MP.noLeftTurnTree();
+        for (double budget : new double[]{0, 150, 600, 2000}) {
+            Set<Location> reachable = MP.reachableWithin(budget);
+            for (int i = 0; i < streets; i++) {
+                Double distance = tree.distance(new Location("St " + i, StreetSide.Right));
+                boolean inBudget = distance != null && distance <= budget;
+                boolean found = reachable.contains(new Location("St " + i, StreetSide.Right))
+                        || reachable.contains(new Location("St " + i, StreetSide.Left));
+                assertEquals(inBudget, found, "St " + i + " at " + distance + " within " + budget);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> MP.reachableWithin(-1));
+        assertNull(new MapPlanner(30).reachableWithin(100));
+    }
+
+    @Test
+    public void testReachableBoundary() {
+        MapPlanner MP = new MapPlanner(30);
+        for (int i = 0; i < 4; i++) {
+            MP.addStreet("S" + i, new Point(100 * i, 0), new Point(100 * i + 100, 0));
+        }
+        MP.depotLocation(new Location("S0", StreetSide.Right));
+
+        // From the middle of S0, 180 metres reach the end of S1 and 30 metres into S2
+        assertEquals(new java.util.HashSet<>(Arrays.asList(new Location("S0", StreetSide.Right),
+                new Location("S1", StreetSide.Right), new Location("S2", StreetSide.Right))), MP.reachableWithin(250));
+        Map<Location, Double> boundary = MP.reachableBoundary(180);
+        assertEquals(1, boundary.size());
+        assertEquals(30.0, boundary.get(new Location("S2", StreetSide.Right)), 0.001);
+
+        // Within its own street the depot drives from the middle
+        assertEquals(70.0, MP.reachableBoundary(20).get(new Location("S0", StreetSide.Right)), 0.001);
+    }
+
+    @Test
+    public void testTurnComponents() throws InterruptedException {
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("A", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("B", new Point(100, 0), new Point(200, 0));
+        MP.depotLocation(new Location("B", StreetSide.Right));
+
+        // B leads nowhere without a U-turn, so A is rejected before any search
+        assertNull(MP.routeNoLeftTurn(new Location("A", StreetSide.Right)));
+        assertNull(MP.routeNoLeftTurnBidirectional(new Location("A", StreetSide.Right)));
+        List<Set<Location>> report = MP.turnComponents();
+        assertEquals(4, report.size());
+        assertEquals(1, report.get(0).size());
+
+        // A block of right turns forms one component, found again after the streets are added
+        MP.addStreet("C", new Point(200, 0), new Point(200, -100));
+        MP.addStreet("D", new Point(200, -100), new Point(100, -100));
+        MP.addStreet("E", new Point(100, -100), new Point(100, 0));
+        report = MP.turnComponents();
+        assertEquals(4, report.get(0).size());
+        assertTrue(report.get(0).contains(new Location("B", StreetSide.Right)));
+        assertTrue(report.get(0).contains(new Location("E", StreetSide.Right)));
+        assertNotNull(MP.routeNoLeftTurn(new Location("E", StreetSide.Right)));
+
+        // After another street a route searches at once, while the components are found in the background
+        MP.addStreet("F", new Point(200, -100), new Point(300, -100));
+        RoadGraph map = MP.compile();
+        assertNull(MP.knownComponents(map));
+        assertNotNull(MP.routeNoLeftTurn(new Location("D", StreetSide.Right)));
+        long deadline = System.nanoTime() + 10000000000L;
+        while (MP.knownComponents(map) == null && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertSame(map, MP.knownComponents(map).map());
+        assertNull(MP.routeNoLeftTurn(new Location("A", StreetSide.Right)));
+    }
+
+    @Test
+    public void testRouteCache() {
+        MapPlanner MP = new MapPlanner(30);
+        MapPlanner probe = new MapPlanner(30);
+        int streets = addGrid(23, MP, probe);
+        MP.depotLocation(new Location("St 0", StreetSide.Right));
+        probe.depotLocation(new Location("St 0", StreetSide.Right));
+        assertNull(MP.routeCache());
+        assertThrows(IllegalArgumentException.class, () -> MP.setRouteCacheSize(-1));
+
+        MP.setRouteCacheSize(2);
+        RouteCache cache = MP.routeCache();
+        // The last street added that the depot reaches
+        ShortestPathTree tree = probe.noLeftTurnTree();
+        int reached = streets - 1;
+        while (tree.route(new Location("St " + reached, StreetSide.Right)) == null) {
+            reached--;
+        }
+        Location target = new Location("St " + reached, StreetSide.Right);
+        Route first = MP.routeNoLeftTurn(target);
+        Route second = MP.routeNoLeftTurn(target);
+        assertNotSame(first, second);
+        assertEquals(first.length(), second.length(), 0.0);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // Turn cost models are cached apart, and the oldest route makes way once the cache is full
+        MP.routeWithTurnCosts(target, TurnCostModel.NO_U_TURN);
+        MP.routeNoLeftTurn(new Location("St 1", StreetSide.Right));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        MP.routeNoLeftTurn(new Location("St 1", StreetSide.Left));
+        assertEquals(2, cache.hits());
+        assertEquals(0.4, cache.hitRate(), 0.001);
+
+        // A new street empties the cache without counting evictions
+        MP.addStreet("Bypass", new Point(-100, -100), new Point(0, 0));
+        MP.routeNoLeftTurn(new Location("St 1", StreetSide.Right));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.evictions());
+
+        MP.setRouteCacheSize(0);
+        assertNull(MP.routeCache());
+    }
+
+    @Test
+    public void testRouteWithTurnCosts() {
+        // Heading east at (100,0) the target is a left turn away, or a right-turn loop around the block below
+        MapPlanner MP = new MapPlanner(30);
+        MP.addStreet("A", new Point(0, 0), new Point(100, 0));
+        MP.addStreet("Target", new Point(100, 0), new Point(100, 100));
+        MP.addStreet("B", new Point(100, 0), new Point(200, 0));
+        MP.addStreet("C", new Point(200, 0), new Point(200, -100));
+        MP.addStreet("D", new Point(200, -100), new Point(100, -100));
+        MP.addStreet("E", new Point(100, -100), new Point(100, 0));
+        MP.depotLocation(new Location("A", StreetSide.Right));
+        Location target = new Location("Target", StreetSide.Right);
+
+        Route cheapLeft = MP.routeWithTurnCosts(target, new TurnCostModel(30, 0, 0, Double.POSITIVE_INFINITY));
+        assertEquals(2, cheapLeft.legs());
+        assertEquals(TurnDirection.Left, cheapLeft.turnDirection(2));
+
+        // A left turn dearer than the loop, or banned at this intersection, sends the route around the block
+        Route dearLeft = MP.routeWithTurnCosts(target, new TurnCostModel(1000, 0, 0, Double.POSITIVE_INFINITY));
+        assertEquals(6, dearLeft.legs());
+        TurnCostModel bannedHere = new TurnCostModel(30, 0, 0, Double.POSITIVE_INFINITY)
+                .withIntersection(new Point(100, 0), TurnDirection.Left, Double.POSITIVE_INFINITY);
+        assertEquals(6, MP.routeWithTurnCosts(target, bannedHere).legs());
+        assertEquals(MP.routeNoLeftTurn(target).length(), MP.routeWithTurnCosts(target, TurnCostModel.NO_LEFT_TURN).length(), 0.001);
+
+        assertThrows(IllegalArgumentException.class, () -> MP.routeWithTurnCosts(target, null));
+        assertNull(MP.routeWithTurnCosts(new Location("Nowhere", StreetSide.Right), TurnCostModel.NO_U_TURN));
+    }
+
+    @Test
+    public void testBidirectionalRoutesMatchTree() {
+        MapPlanner MP = new MapPlanner(30);
+        MapPlanner treePlanner = new MapPlanner(30);
+        int streets = addGrid(17, MP, treePlanner);
+        assertShortestRoutes(MP, treePlanner, streets, StreetSide.Left, MP::routeNoLeftTurnBidirectional);
+        assertNull(MP.routeNoLeftTurnBidirectional(new Location("Nowhere", StreetSide.Right)));
+    }
+
+    @Test
+    public void testHierarchyRoutesMatchTree() {
+        MapPlanner MP = new MapPlanner(30);
+        MapPlanner treePlanner = new MapPlanner(30);
+        int streets = addGrid(13, MP, treePlanner);
+        assertTrue(MP.prepareHierarchy());
+        assertShortestRoutes(MP, treePlanner, streets);
+
+        // A new street retires the hierarchy rather than routing with a stale one
+        MP.addStreet("Bypass", new Point(-100, -100), new Point(0, 0));
+        treePlanner.addStreet("Bypass", new Point(-100, -100), new Point(0, 0));
+        assertShortestRoutes(MP, treePlanner, streets);
+
+        assertFalse(new MapPlanner(30).prepareHierarchy());
+    }
+}
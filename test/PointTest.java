@@ -2,6 +2,11 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 class PointTest {
 
     @Test
@@ -151,4 +156,32 @@ class PointTest {
         assertFalse(p1.equals(p2));
         assertEquals("0,0", p1.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEqualPointsHashAlike() {
+        Point p1 = new Point(-3, 4);
+        Point p2 = new Point(-3, 4);
+        assertTrue(p1.equals((Object) p2));
+        assertEquals(p1.hashCode(), p2.hashCode());
+        assertFalse(p1.equals(null));
+        assertFalse(p1.equals("-3,4"));
+
+        Map<Point, Integer> seen = new HashMap<>();
+        seen.put(p1, 1);
+        assertEquals(Integer.valueOf(1), seen.get(p2));
+        assertNull(seen.get(new Point(4, -3)));
+    }
+
+    @Test
+    public void testGridPointsHashApart() {
+        // Mirrored and evenly spaced points must not share hash codes, or a pool of grid points degrades to lists
+        assertNotEquals(new Point(3, 5).hashCode(), new Point(5, 3).hashCode());
+        Set<Integer> hashes = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            for (int j = 0; j < 500; j++) {
+                hashes.add(new Point(128 * i, 128 * j).hashCode());
+            }
+        }
+        assertTrue(hashes.size() > 249000);
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoadGraphTest {
+
+    private MapPlanner mapPlanner;
+
+    @BeforeEach
+    void setUp() {
+        mapPlanner = new MapPlanner(30);
+        mapPlanner.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        mapPlanner.addStreet("B St", new Point(100, 0), new Point(100, 100));
+        mapPlanner.addStreet("Oak St", new Point(0, 0), new Point(0, 100));
+    }
+
+    @Test
+    void testCounts() {
+        RoadGraph map = mapPlanner.compile();
+        assertEquals(3, map.streetCount());
+        assertEquals(4, map.intersectionCount());
+    }
+
+    @Test
+    void testSnapshotIsCachedUntilStreetAdded() {
+        RoadGraph map = mapPlanner.compile();
+        assertSame(map, mapPlanner.compile());
+
+        mapPlanner.addStreet("C St", new Point(100, 100), new Point(200, 100));
+        RoadGraph recompiled = mapPlanner.compile();
+        assertNotSame(map, recompiled);
+        assertEquals(4, recompiled.streetCount());
+        assertEquals(3, map.streetCount());
+    }
+
+    @Test
+    void testStreetIdsFollowInsertionOrder() {
+        RoadGraph map = mapPlanner.compile();
+        assertEquals(0, map.streetIndex("A St"));
+        assertEquals(2, map.streetIndex("Oak St"));
+        assertEquals(-1, map.streetIndex("Nowhere St"));
+        assertEquals("B St", map.streetId(1));
+    }
+
+    @Test
+    void testAdjacency() {
+        RoadGraph map = mapPlanner.compile();
+        int aRight = map.state(new Location("A St", StreetSide.Right));
+        int head = map.headNode(aRight);
+        assertEquals(100, map.nodeX(head));
+        assertEquals(0, map.nodeY(head));
+
+        // A St (driven backwards) and B St leave the intersection at 100,0
+        assertEquals(2, map.endOut(head) - map.firstOut(head));
+        int origin = map.tailNode(aRight);
+        assertEquals(2, map.endOut(origin) - map.firstOut(origin));
+    }
+
+    @Test
+    void testTurn() {
+        RoadGraph map = mapPlanner.compile();
+        int aRight = map.state(new Location("A St", StreetSide.Right));
+        int aLeft = map.state(new Location("A St", StreetSide.Left));
+        int bRight = map.state(new Location("B St", StreetSide.Right));
+        int oakRight = map.state(new Location("Oak St", StreetSide.Right));
+
+        assertEquals(TurnDirection.Left, map.turn(aRight, bRight));
+        assertEquals(TurnDirection.UTurn, map.turn(aRight, aLeft));
+        assertEquals(TurnDirection.Right, map.turn(aLeft, oakRight));
+    }
+
+    @Test
+    void testTurnTableMatchesGeometry() {
+        RoadGraph map = mapPlanner.compile();
+        for (int state = 0; state < map.stateCount(); state++) {
+            int head = map.headNode(state);
+            int tail = map.tailNode(state);
+            for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+                int next = map.headNode(map.outState(slot));
+                Point from = new Point(map.nodeX(tail), map.nodeY(tail));
+                Point at = new Point(map.nodeX(head), map.nodeY(head));
+                Point to = new Point(map.nodeX(next), map.nodeY(next));
+                assertEquals(from.turnType(at, to, 30), map.turnAt(state, slot));
+            }
+        }
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        mapPlanner.addStreet("\u00c9lys\u00e9e St", new Point(0, 100), new Point(-100, 100));
+        RoadGraph map = mapPlanner.compile();
+        Path file = Files.createTempFile("roadgraph", ".map");
+        try {
+            map.save(file);
+            RoadGraph loaded = RoadGraph.load(file);
+
+            assertEquals(map.streetCount(), loaded.streetCount());
+            assertEquals(map.intersectionCount(), loaded.intersectionCount());
+            assertEquals(map.getDegree(), loaded.getDegree());
+            assertEquals(2, loaded.streetIndex("Oak St"));
+            // Ids are found and decoded in the mapped file
+            for (int street = 0; street < map.streetCount(); street++) {
+                assertEquals(map.streetId(street), loaded.streetId(street));
+                assertEquals(street, loaded.streetIndex(map.streetId(street)));
+            }
+            assertEquals(-1, loaded.streetIndex("\u00c9lys\u00e9e"));
+            assertEquals(-1, loaded.streetIndex(null));
+            assertEquals(map.node(-100, 100), loaded.node(-100, 100));
+            for (int state = 0; state < map.stateCount(); state++) {
+                assertEquals(map.length(RoadGraph.street(state)), loaded.length(RoadGraph.street(state)));
+                assertEquals(map.tailNode(state), loaded.tailNode(state));
+                assertEquals(map.headNode(state), loaded.headNode(state));
+                int head = map.headNode(state);
+                for (int slot = map.firstOut(head); slot < map.endOut(head); slot++) {
+                    assertEquals(map.outState(slot), loaded.outState(slot));
+                    assertEquals(map.turnAt(state, slot), loaded.turnAt(state, slot));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testLoadRejectsOtherFiles() throws IOException {
+        Path file = Files.createTempFile("roadgraph", ".map");
+        try {
+            Files.write(file, "A St,0,0,100,0\n".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> RoadGraph.load(file));
+
+            mapPlanner.compile().save(file);
+            byte[] truncated = Arrays.copyOf(Files.readAllBytes(file), 60);
+            Files.write(file, truncated);
+            assertThrows(IOException.class, () -> RoadGraph.load(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -33,6 +33,19 @@ public class RouteTest {
         assertEquals(2, route.legs());
     }
 
+    @Test
+    public void testAppendTurnOntoStreetAddedAfterCompile() {
+        mapPlanner.compile();
+        mapPlanner.addStreet("3rd St", new Point(100, 100), new Point(200, 100));
+
+        // The turn onto the new street is classified from the geometry, the others from the published table
+        route.appendTurn(TurnDirection.Straight, "A St");
+        assertTrue(route.appendTurn(TurnDirection.Left, "1st Ave"));
+        assertTrue(route.appendTurn(TurnDirection.Right, "3rd St"));
+        assertFalse(route.appendTurn(TurnDirection.Right, "2nd St"));
+        assertEquals(3, route.legs());
+    }
+
     @Test
     public void testAppendInvalidTurn() {
         route.appendTurn(TurnDirection.Straight, "A St");
@@ -100,6 +113,45 @@ public class RouteTest {
         assertEquals(200.0, route.length(), 0.001); // 50 + 100 + 100
     }
 
+    @Test
+    public void testLengthAfterRemovingLastLeg() {
+        route.appendTurn(TurnDirection.Straight, "A St");
+        route.appendTurn(TurnDirection.Left, "1st Ave");
+        route.appendTurn(TurnDirection.Left, "2nd St");
+        assertTrue(route.removeLastLeg());
+        assertEquals(2, route.legs());
+        assertEquals(100.0, route.length(), 0.001); // 50 + 50
+        assertTrue(route.appendTurn(TurnDirection.Left, "2nd St"));
+        assertEquals(200.0, route.length(), 0.001);
+    }
+
+    @Test
+    public void testRemoveLastLegFromEmptyRoute() {
+        assertFalse(route.removeLastLeg());
+        assertEquals(0, route.legs());
+    }
+
+    @Test
+    public void testPrefixIsIndependentOfRoute() {
+        route.appendTurn(TurnDirection.Straight, "A St");
+        route.appendTurn(TurnDirection.Left, "1st Ave");
+        route.appendTurn(TurnDirection.Left, "2nd St");
+
+        Route prefix = route.prefix(2);
+        assertEquals(2, prefix.legs());
+        assertEquals(100.0, prefix.length(), 0.001);
+
+        // Changing either route leaves the other untouched
+        route.removeLastLeg();
+        route.removeLastLeg();
+        assertEquals("1st Ave", prefix.turnOnto(2));
+        assertTrue(prefix.appendTurn(TurnDirection.Left, "2nd St"));
+        assertEquals(1, route.legs());
+        assertNull(route.turnOnto(2));
+        assertEquals(3, prefix.legs());
+        assertEquals(200.0, prefix.length(), 0.001);
+    }
+
     // Loops Tests
     @Test
     public void testLoopsNoLoop() {
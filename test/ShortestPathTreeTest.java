@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortestPathTreeTest {
+
+    private MapPlanner mapPlanner;
+
+    @BeforeEach
+    void setUp() {
+        mapPlanner = new MapPlanner(30);
+        mapPlanner.addStreet("A St", new Point(0, 0), new Point(100, 0));
+        mapPlanner.addStreet("B St", new Point(100, 0), new Point(100, 100));
+        mapPlanner.addStreet("2nd Ave", new Point(100, 100), new Point(200, 100));
+        mapPlanner.addStreet("2.5 Ave", new Point(200, 100), new Point(200, 0));
+        mapPlanner.addStreet("2.75 Ave", new Point(200, 0), new Point(100, 0));
+        mapPlanner.addStreet("3rd Ave", new Point(200, 100), new Point(300, 100));
+        mapPlanner.addStreet("6th Ave", new Point(200, 300), new Point(300, 300));
+    }
+
+    @Test
+    void testNoDepot() {
+        assertNull(mapPlanner.noLeftTurnTree());
+    }
+
+    @Test
+    void testRoutesMatchSingleSearches() {
+        mapPlanner.depotLocation(new Location("2nd Ave", StreetSide.Right));
+        ShortestPathTree tree = mapPlanner.noLeftTurnTree();
+        assertNotNull(tree);
+
+        Route route = tree.route(new Location("A St", StreetSide.Right));
+        assertNotNull(route);
+        assertEquals(4, route.legs());
+        assertEquals(300.0, tree.distance(new Location("A St", StreetSide.Right)), 0.001);
+        assertEquals(route.length(), tree.distance(new Location("A St", StreetSide.Right)), 0.001);
+
+        assertNull(tree.route(new Location("6th Ave", StreetSide.Right)));
+        assertNull(tree.distance(new Location("6th Ave", StreetSide.Right)));
+        assertNull(tree.route(new Location("Nowhere St", StreetSide.Right)));
+        assertEquals(6, tree.reachableStreets());
+    }
+
+    @Test
+    void testTreeIsReusedUntilInputsChange() {
+        mapPlanner.depotLocation(new Location("2nd Ave", StreetSide.Right));
+        ShortestPathTree tree = mapPlanner.noLeftTurnTree();
+        assertSame(tree, mapPlanner.noLeftTurnTree());
+        assertTrue(tree.isCurrent());
+
+        mapPlanner.addStreet("4th Ave", new Point(300, 100), new Point(400, 100));
+        assertFalse(tree.isCurrent());
+        ShortestPathTree rebuilt = mapPlanner.noLeftTurnTree();
+        assertNotSame(tree, rebuilt);
+        assertNotNull(rebuilt.route(new Location("4th Ave", StreetSide.Left)));
+
+        mapPlanner.depotLocation(new Location("A St", StreetSide.Right));
+        assertFalse(rebuilt.isCurrent());
+        assertEquals("A St", mapPlanner.noLeftTurnTree().getDepot().getStreetId());
+    }
+}
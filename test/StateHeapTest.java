@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateHeapTest {
+
+    @Test
+    void testPopsInKeyOrder() {
+        StateHeap heap = new StateHeap(5);
+        heap.push(3, 30.0);
+        heap.push(1, 10.0);
+        heap.push(4, 40.0);
+        heap.push(0, 5.0);
+
+        assertEquals(4, heap.size());
+        assertEquals(5.0, heap.peekKey(), 0.001);
+        assertEquals(0, heap.pop());
+        assertEquals(1, heap.pop());
+        assertEquals(3, heap.pop());
+        assertEquals(4, heap.pop());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void testDecreaseKey() {
+        StateHeap heap = new StateHeap(3);
+        heap.push(0, 10.0);
+        heap.push(1, 20.0);
+        heap.push(1, 5.0);
+        heap.push(0, 50.0); // larger key is ignored
+
+        assertEquals(2, heap.size());
+        assertEquals(1, heap.pop());
+        assertEquals(10.0, heap.peekKey(), 0.001);
+        assertEquals(0, heap.pop());
+    }
+
+    @Test
+    void testClear() {
+        StateHeap heap = new StateHeap(3);
+        heap.push(2, 1.0);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(2));
+        heap.push(2, 3.0);
+        assertEquals(2, heap.pop());
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreetIndexTest {
+
+    private MapPlanner mapPlanner;
+
+    @BeforeEach
+    void setUp() {
+        mapPlanner = new MapPlanner(30);
+        mapPlanner.addStreet("A St", new Point(0, 0), new Point(1000, 0));
+        mapPlanner.addStreet("B St", new Point(1000, 0), new Point(1000, 1000));
+        mapPlanner.addStreet("C St", new Point(-2000, 3000), new Point(-2000, 5000));
+    }
+
+    @Test
+    void testSnapToNearestStreetAndSide() {
+        Location north = mapPlanner.snapToStreet(new Point(400, 30));
+        assertEquals("A St", north.getStreetId());
+        assertEquals(StreetSide.Left, north.getStreetSide());
+
+        Location south = mapPlanner.snapToStreet(new Point(400, -30));
+        assertEquals("A St", south.getStreetId());
+        assertEquals(StreetSide.Right, south.getStreetSide());
+
+        Location east = mapPlanner.snapToStreet(new Point(1050, 600));
+        assertEquals("B St", east.getStreetId());
+        assertEquals(StreetSide.Right, east.getStreetSide());
+    }
+
+    @Test
+    void testSnapBeyondStreetEnd() {
+        // Closest to the end of A St even though it lies past the street
+        Location past = mapPlanner.snapToStreet(new Point(-300, 10));
+        assertEquals("A St", past.getStreetId());
+    }
+
+    @Test
+    void testSnapFarFromAnyBucket() {
+        Location far = mapPlanner.snapToStreet(new Point(-2600, 9000));
+        assertEquals("C St", far.getStreetId());
+        Location outside = mapPlanner.snapToStreet(new Point(50000, 2000));
+        assertEquals("B St", outside.getStreetId());
+    }
+
+    @Test
+    void testSnapFarOutsideTheMap() {
+        // Only the buckets of the occupied box are visited, however far away the point is
+        long started = System.nanoTime();
+        assertEquals("B St", mapPlanner.snapToStreet(new Point(2000000000, 500)).getStreetId());
+        assertEquals("C St", mapPlanner.snapToStreet(new Point(-2000000000, 2000000000)).getStreetId());
+        assertEquals("A St", mapPlanner.snapToStreet(new Point(500, -2000000000)).getStreetId());
+        assertTrue(System.nanoTime() - started < 1000000000L);
+    }
+
+    @Test
+    void testSnapToLongDiagonals() {
+        // Each street is only listed in the buckets it crosses, not across its whole bounding box
+        long started = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            mapPlanner.addStreet("Diagonal " + i, new Point(10000 + 100 * i, 0), new Point(45355 + 100 * i, 35355));
+        }
+        assertTrue(System.nanoTime() - started < 1000000000L);
+        assertEquals("Diagonal 0", mapPlanner.snapToStreet(new Point(20000, 10010)).getStreetId());
+        assertEquals(StreetSide.Left, mapPlanner.snapToStreet(new Point(20000, 10010)).getStreetSide());
+        assertEquals("Diagonal 199", mapPlanner.snapToStreet(new Point(60000, 10000)).getStreetId());
+        // The empty corner of the boxes is far from every diagonal
+        assertEquals("Diagonal 0", mapPlanner.snapToStreet(new Point(10000, 35000)).getStreetId());
+        assertEquals("Diagonal 199", mapPlanner.snapToStreet(new Point(65000, 0)).getStreetId());
+    }
+
+    @Test
+    void testSnapSeesNewStreets() {
+        assertEquals("A St", mapPlanner.snapToStreet(new Point(500, 300)).getStreetId());
+        mapPlanner.addStreet("D St", new Point(0, 310), new Point(1000, 310));
+        assertEquals("D St", mapPlanner.snapToStreet(new Point(500, 300)).getStreetId());
+    }
+
+    @Test
+    void testSnapInvalid() {
+        assertNull(mapPlanner.snapToStreet(null));
+        assertNull(new MapPlanner(30).snapToStreet(new Point(0, 0)));
+    }
+}
@@ -84,4 +84,20 @@ public class StreetTest {
         Street largeStreet = new Street("Large St", new Point(1000000, 2000000), new Point(3000000, 4000000));
         assertEquals(2828427.125, largeStreet.getLength(), 0.001);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTurnOntoMatchesPointTurnType() {
+        Point[] points = { new Point(0, 0), new Point(3, 4), new Point(6, 8), new Point(6, 0), new Point(-1, 9), new Point(3, 4) };
+        for (int degree : new int[] { 0, 5, 30 }) {
+            double tolerance = Math.sin((degree / 180.0) * Math.PI);
+            for (Point other : points) {
+                // A street from 0,0 to 3,4 and one leaving 3,4
+                Street onto = new Street("B St", end, other);
+                assertEquals(start.turnType(end, other, degree), street.turnOnto(true, onto, true, tolerance));
+                // Driven backwards, into 0,0 and back out along a street ending there
+                Street back = new Street("C St", other, start);
+                assertEquals(end.turnType(start, other, degree), street.turnOnto(false, back, false, tolerance));
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class TurnComponentsTest {
+
+    // A jittered grid of the given size with streets pointing either way and a few missing
+    private static List<Street> grid(int size, long seed) {
+        Random random = new Random(seed);
+        Point[][] points = new Point[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                points[i][j] = new Point(100 * i + random.nextInt(40) - 20, 100 * j + random.nextInt(40) - 20);
+            }
+        }
+        List<Street> streets = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i + 1 < size && random.nextInt(5) > 0) streets.add(new Street("St " + streets.size(), points[i][j], points[i + 1][j]));
+                if (j + 1 < size && random.nextInt(5) > 0) streets.add(new Street("St " + streets.size(), points[i][j], points[i][j + 1]));
+            }
+        }
+        return streets;
+    }
+
+    @Test
+    void testNeverRejectsReachableStates() {
+        RoadGraph map = new RoadGraph(grid(7, 21), 30);
+        TurnComponents components = TurnComponents.of(map);
+        assertSame(map, components.map());
+        assertTrue(components.count() > 1);
+
+        TurnSearch search = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+        TurnSearch backward = new TurnSearch(map, TurnCostModel.NO_LEFT_TURN);
+        int rejected = 0;
+        for (int from = 0; from < map.stateCount(); from++) {
+            search.run(from, -1);
+            for (int to = 0; to < map.stateCount(); to++) {
+                boolean reachable = search.distance(to) != Double.POSITIVE_INFINITY;
+                if (reachable) {
+                    assertTrue(components.mayReach(from, to), from + " reaches " + to);
+                } else if (!components.mayReach(from, to)) {
+                    rejected++;
+                }
+            }
+            // States that reach each other share a component, and only they do
+            backward.runBackward(new int[]{from});
+            for (int to = 0; to < map.stateCount(); to++) {
+                boolean both = search.distance(to) != Double.POSITIVE_INFINITY && backward.distance(to) != Double.POSITIVE_INFINITY;
+                assertEquals(both, components.component(from) == components.component(to));
+            }
+        }
+        assertTrue(rejected > 0);
+    }
+
+    @Test
+    void testDeadEndIsItsOwnComponent() {
+        List<Street> streets = new ArrayList<>();
+        streets.add(new Street("A", new Point(0, 0), new Point(100, 0)));
+        streets.add(new Street("B", new Point(100, 0), new Point(200, 0)));
+        RoadGraph map = new RoadGraph(streets, 30);
+        TurnComponents components = TurnComponents.of(map);
+
+        // Without U-turns each direction is a one-state component; A forwards leads on to B forwards only
+        assertEquals(4, components.count());
+        assertTrue(components.mayReach(0, 2));
+        assertFalse(components.mayReach(2, 0));
+        assertFalse(components.mayReachStreet(2, 0));
+        assertTrue(components.mayReachStreet(0, 1));
+    }
+}
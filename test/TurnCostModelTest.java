@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TurnCostModelTest {
+
+    @Test
+    void testCosts() {
+        TurnCostModel model = new TurnCostModel(30, 0, 0, Double.POSITIVE_INFINITY);
+        assertEquals(30, model.cost(TurnDirection.Left), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, model.cost(TurnDirection.UTurn), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, TurnCostModel.NO_LEFT_TURN.cost(TurnDirection.Left), 0.0);
+        assertEquals(0, TurnCostModel.NO_U_TURN.cost(TurnDirection.Left), 0.0);
+
+        assertThrows(IllegalArgumentException.class, () -> new TurnCostModel(-1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TurnCostModel(Double.NaN, 0, 0, 0));
+    }
+
+    @Test
+    void testIntersectionCosts() {
+        TurnCostModel model = new TurnCostModel(30, 0, 0, Double.POSITIVE_INFINITY);
+        TurnCostModel banned = model.withIntersection(new Point(100, 0), TurnDirection.Left, Double.POSITIVE_INFINITY)
+                .withIntersection(new Point(100, 0), TurnDirection.Right, 5);
+
+        // The original is left alone and other intersections keep the usual costs
+        assertEquals(30, model.cost(new Point(100, 0), TurnDirection.Left), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, banned.cost(new Point(100, 0), TurnDirection.Left), 0.0);
+        assertEquals(5, banned.cost(new Point(100, 0), TurnDirection.Right), 0.0);
+        assertEquals(30, banned.cost(new Point(0, 0), TurnDirection.Left), 0.0);
+        assertThrows(IllegalArgumentException.class, () -> model.withIntersection(null, TurnDirection.Left, 1));
+        assertThrows(IllegalArgumentException.class, () -> model.withIntersection(new Point(0, 0), TurnDirection.Left, -1));
+
+        // Resolved for a map, the override sits in the row of its intersection
+        List<Street> streets = new ArrayList<>();
+        streets.add(new Street("A", new Point(0, 0), new Point(100, 0)));
+        streets.add(new Street("B", new Point(100, 0), new Point(100, 100)));
+        RoadGraph map = new RoadGraph(streets, 30);
+        int[] rows = banned.overrideRows(map);
+        double[] costs = banned.overrideCosts(map);
+        int node = map.node(100, 0);
+        assertEquals(Double.POSITIVE_INFINITY, costs[rows[node] + TurnDirection.Left.ordinal()], 0.0);
+        assertEquals(-1, rows[map.node(0, 0)]);
+        assertNull(model.overrideRows(map));
+    }
+}